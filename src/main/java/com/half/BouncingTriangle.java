@@ -84,9 +84,10 @@ public class BouncingTriangle {
 
         GL.createCapabilities();
 
+        GLState.reset(); // New context
         glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
-        glEnable(GL_BLEND);
-        glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+        GLState.enable(GL_BLEND);
+        GLState.blendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
     }
 
     private void loop() {
@@ -1,6 +1,6 @@
 package com.half;
 
-import org.joml.Vector3f;
+import org.joml.Vector3fc;
 
 /**
  * Enhanced Cube implementation that extends GameObject
@@ -11,9 +11,9 @@ public class Cube extends GameObject {
      * Creates a new Cube with the given name and size
      */
     public Cube(String name, float size) {
-        super(name, new CubeMesh(size));
-        this.hasPhysics = true;
-        this.bounds = new Vector3f(size * 0.5f, size * 0.5f, size * 0.5f);
+        super(name, MeshCache.getCube(size));
+        setHasPhysics(true);
+        setBounds(size * 0.5f, size * 0.5f, size * 0.5f);
     }
 
     @Override
@@ -25,7 +25,8 @@ public class Cube extends GameObject {
     public void update(float deltaTime) {
         // Rotate the cube
         if (getRotationSpeed() != 0) {
-            getTransform().getRotation().y = (getTransform().getRotation().y + getRotationSpeed() * deltaTime) % 360;
+            Vector3fc rotation = getTransform().getRotation();
+            getTransform().setRotation(rotation.x(), (rotation.y() + getRotationSpeed() * deltaTime) % 360, rotation.z());
         }
     }
     
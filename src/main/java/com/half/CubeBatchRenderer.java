@@ -0,0 +1,234 @@
+package com.half;
+
+import org.joml.Matrix4fc;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.opengl.GL33.*;
+
+/**
+ * CubeBatchRenderer - draws any number of shaded, rotating cubes with one draw call.
+ * The cube itself lives in a static VBO; every cube added between {@link #begin()} and
+ * {@link #end(Matrix4fc, Matrix4fc)} writes 8 floats of instance data (position, size,
+ * color and rotation angle) straight into the mapped memory of a {@link StreamingBuffer}.
+ * The rotation is applied in the vertex shader.
+ * If a frame adds more cubes than fit, the full region is drawn and the next one begun.
+ */
+public class CubeBatchRenderer {
+    private static final int INSTANCE_FLOATS = 8; // vec4 position + size, vec4 color + angle
+    private static final int INSTANCE_BYTES = INSTANCE_FLOATS * Float.BYTES;
+    private static final int VERTEX_FLOATS = 4; // vec3 position, float shade
+
+    // Rotation axis of the old glRotatef(angle, 1, 1, 0.5) call; normalized in the shader
+    private static final String VERTEX_SHADER = "#version 330 core\n" +
+        "layout (location = 0) in vec3 position;\n" +
+        "layout (location = 1) in float shade;\n" +
+        "layout (location = 2) in vec4 instancePosition;\n" +
+        "layout (location = 3) in vec4 instanceColor;\n" +
+        "\n" +
+        "uniform mat4 projectionMatrix;\n" +
+        "uniform mat4 viewMatrix;\n" +
+        "\n" +
+        "out vec3 Color;\n" +
+        "\n" +
+        "void main() {\n" +
+        "    vec3 axis = normalize(vec3(1.0, 1.0, 0.5));\n" +
+        "    float s = sin(instanceColor.w);\n" +
+        "    float c = cos(instanceColor.w);\n" +
+        "    vec3 p = position * instancePosition.w;\n" +
+        "    // Rodrigues' rotation formula\n" +
+        "    p = p * c + cross(axis, p) * s + axis * dot(axis, p) * (1.0 - c);\n" +
+        "    Color = clamp(instanceColor.rgb * shade, 0.0, 1.0);\n" +
+        "    gl_Position = projectionMatrix * viewMatrix * vec4(p + instancePosition.xyz, 1.0);\n" +
+        "}";
+
+    private static final String FRAGMENT_SHADER = "#version 330 core\n" +
+        "in vec3 Color;\n" +
+        "out vec4 FragColor;\n" +
+        "\n" +
+        "void main() {\n" +
+        "    FragColor = vec4(Color, 1.0);\n" +
+        "}";
+
+    private final Shader shader;
+    private final UniformHandle projectionMatrixUniform;
+    private final UniformHandle viewMatrixUniform;
+    private final int capacity; // Instances per mapping
+    private int vaoId;
+    private int cubeVboId;
+    private final StreamingBuffer instances;
+    private long attributeOffset = -1; // Region the instance attributes point at
+
+    private FloatBuffer mapped; // Instance storage while between begin() and end()
+    private int count;
+
+    // Per-frame statistics
+    private int drawCalls;
+    private int instancesDrawn;
+
+    public CubeBatchRenderer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+
+        shader = new Shader();
+        shader.createVertexShader(VERTEX_SHADER);
+        shader.createFragmentShader(FRAGMENT_SHADER);
+        shader.link();
+        projectionMatrixUniform = shader.getUniform("projectionMatrix");
+        viewMatrixUniform = shader.getUniform("viewMatrix");
+
+        vaoId = glGenVertexArrays();
+        if (vaoId == 0) {
+            throw new RuntimeException("Failed to create VAO");
+        }
+        GpuResourceRegistry.register(GpuResourceRegistry.Type.VERTEX_ARRAY, vaoId, 0, "CubeBatchRenderer");
+        GLState.bindVertexArray(vaoId);
+
+        // Static unit cube, 36 vertices with a per-face brightness
+        cubeVboId = glGenBuffers();
+        if (cubeVboId == 0) {
+            throw new RuntimeException("Failed to create VBO");
+        }
+        GpuResourceRegistry.register(GpuResourceRegistry.Type.BUFFER, cubeVboId, 36L * VERTEX_FLOATS * Float.BYTES, "CubeBatchRenderer cube");
+        FloatBuffer cube = MemoryUtil.memAllocFloat(36 * VERTEX_FLOATS);
+        try {
+            putCube(cube);
+            cube.flip();
+            GLState.bindBuffer(GL_ARRAY_BUFFER, cubeVboId);
+            glBufferData(GL_ARRAY_BUFFER, cube, GL_STATIC_DRAW);
+        } finally {
+            MemoryUtil.memFree(cube);
+        }
+        glVertexAttribPointer(0, 3, GL_FLOAT, false, VERTEX_FLOATS * Float.BYTES, 0);
+        glEnableVertexAttribArray(0);
+        glVertexAttribPointer(1, 1, GL_FLOAT, false, VERTEX_FLOATS * Float.BYTES, 3 * Float.BYTES);
+        glEnableVertexAttribArray(1);
+
+        // Instance attributes; their pointers are set per region in flush()
+        instances = new StreamingBuffer(GL_ARRAY_BUFFER, capacity * INSTANCE_BYTES);
+        glEnableVertexAttribArray(2);
+        glVertexAttribDivisor(2, 1);
+        glEnableVertexAttribArray(3);
+        glVertexAttribDivisor(3, 1);
+    }
+
+    /**
+     * Starts a frame. Cubes can be added until {@link #end(Matrix4fc, Matrix4fc)}.
+     */
+    public void begin() {
+        if (mapped != null) {
+            throw new IllegalStateException("begin() called twice without end()");
+        }
+        drawCalls = 0;
+        instancesDrawn = 0;
+        map();
+    }
+
+    /**
+     * Adds a cube with half extent size, rotated by angle degrees around (1, 1, 0.5).
+     */
+    public void add(float x, float y, float z, float size, float r, float g, float b, float angle) {
+        if (mapped == null) {
+            throw new IllegalStateException("add() called outside begin()/end()");
+        }
+        if (count == capacity) {
+            flush();
+            map();
+        }
+        mapped.put(x).put(y).put(z).put(size)
+              .put(r).put(g).put(b).put((float) Math.toRadians(angle));
+        count++;
+    }
+
+    /**
+     * Draws all cubes added since begin().
+     */
+    public void end(Matrix4fc projectionMatrix, Matrix4fc viewMatrix) {
+        if (mapped == null) {
+            throw new IllegalStateException("end() called without begin()");
+        }
+        shader.bind();
+        projectionMatrixUniform.set(projectionMatrix);
+        viewMatrixUniform.set(viewMatrix);
+        flush();
+    }
+
+    private void map() {
+        mapped = instances.begin().asFloatBuffer();
+        count = 0;
+    }
+
+    // Finishes the current region and draws what was written to it
+    private void flush() {
+        mapped = null;
+        if (!instances.end()) {
+            // Storage was lost (e.g. a mode switch); skip this batch
+            count = 0;
+            return;
+        }
+        if (count > 0) {
+            shader.bind();
+            GLState.bindVertexArray(vaoId);
+            long offset = instances.getOffset();
+            if (offset != attributeOffset) {
+                GLState.bindBuffer(GL_ARRAY_BUFFER, instances.getBufferId());
+                glVertexAttribPointer(2, 4, GL_FLOAT, false, INSTANCE_BYTES, offset);
+                glVertexAttribPointer(3, 4, GL_FLOAT, false, INSTANCE_BYTES, offset + 4 * Float.BYTES);
+                attributeOffset = offset;
+            }
+            glDrawArraysInstanced(GL_TRIANGLES, 0, 36, count);
+            drawCalls++;
+            instancesDrawn += count;
+        }
+        count = 0;
+    }
+
+    // Two counter-clockwise triangles per face, in the shading of the old immediate mode cube
+    private static void putCube(FloatBuffer buffer) {
+        putFace(buffer, 1.2f, -1, -1, 1, 1, -1, 1, 1, 1, 1, -1, 1, 1);          // Front
+        putFace(buffer, 0.6f, -1, -1, -1, -1, 1, -1, 1, 1, -1, 1, -1, -1);      // Back
+        putFace(buffer, 1.0f, -1, 1, -1, -1, 1, 1, 1, 1, 1, 1, 1, -1);          // Top
+        putFace(buffer, 0.8f, -1, -1, -1, 1, -1, -1, 1, -1, 1, -1, -1, 1);      // Bottom
+        putFace(buffer, 0.9f, 1, -1, -1, 1, 1, -1, 1, 1, 1, 1, -1, 1);          // Right
+        putFace(buffer, 0.7f, -1, -1, -1, -1, -1, 1, -1, 1, 1, -1, 1, -1);      // Left
+    }
+
+    // Splits the quad (a, b, c, d) into triangles abc and acd
+    private static void putFace(FloatBuffer buffer, float shade,
+                                float ax, float ay, float az, float bx, float by, float bz,
+                                float cx, float cy, float cz, float dx, float dy, float dz) {
+        buffer.put(ax).put(ay).put(az).put(shade);
+        buffer.put(bx).put(by).put(bz).put(shade);
+        buffer.put(cx).put(cy).put(cz).put(shade);
+        buffer.put(ax).put(ay).put(az).put(shade);
+        buffer.put(cx).put(cy).put(cz).put(shade);
+        buffer.put(dx).put(dy).put(dz).put(shade);
+    }
+
+    public void cleanup() {
+        mapped = null;
+        instances.cleanup();
+        if (cubeVboId != 0) {
+            GpuResourceRegistry.release(GpuResourceRegistry.Type.BUFFER, cubeVboId);
+            cubeVboId = 0;
+        }
+        if (vaoId != 0) {
+            GpuResourceRegistry.release(GpuResourceRegistry.Type.VERTEX_ARRAY, vaoId);
+            vaoId = 0;
+        }
+        shader.cleanup();
+    }
+
+    public int getCapacity() { return capacity; }
+    public int getDrawCalls() { return drawCalls; }
+    public int getInstancesDrawn() { return instancesDrawn; }
+    public StreamingBuffer getInstanceBuffer() { return instances; }
+}
@@ -0,0 +1,524 @@
+package com.half;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * DynamicAabbTree - incrementally updated bounding volume hierarchy over axis-aligned boxes.
+ * Leaves store fattened boxes, so objects that move a little stay inside their leaf and
+ * cost nothing; only objects leaving their fat box are removed and reinserted.
+ * Insertion picks the sibling with the lowest surface area cost and the tree is kept
+ * balanced with AVL-style rotations, so queries stay logarithmic.
+ *
+ * Nodes live in packed arrays and are recycled through a free list.
+ *
+ * @param <T> type of the user data attached to each proxy
+ */
+public class DynamicAabbTree<T> {
+    private static final int NULL = -1;
+
+    // Frustum classification results
+    private static final int OUTSIDE = 0;
+    private static final int INTERSECT = 1;
+    private static final int INSIDE = 2;
+
+    private float[] bounds; // min xyz, max xyz per node
+    private int[] parent; // Doubles as the next pointer of free nodes
+    private int[] child1;
+    private int[] child2;
+    private int[] height; // Leaves are 0, free nodes -1
+    private Object[] userData;
+    private int root = NULL;
+    private int freeList = NULL;
+    private int nodeCount;
+    private int proxyCount;
+    private final float margin;
+    private int[] stack = new int[64];
+
+    /**
+     * @param margin distance by which leaf boxes are fattened on every side
+     */
+    public DynamicAabbTree(float margin) {
+        this.margin = margin;
+        bounds = new float[0];
+        parent = new int[0];
+        child1 = new int[0];
+        child2 = new int[0];
+        height = new int[0];
+        userData = new Object[0];
+        grow(16);
+    }
+
+    /**
+     * Adds a box to the tree.
+     * @return proxy id to use with {@link #moveProxy} and {@link #destroyProxy}
+     */
+    public int createProxy(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, T data) {
+        int leaf = allocateNode();
+        setFatBounds(leaf, minX, minY, minZ, maxX, maxY, maxZ);
+        userData[leaf] = data;
+        height[leaf] = 0;
+        insertLeaf(leaf);
+        proxyCount++;
+        return leaf;
+    }
+
+    public void destroyProxy(int proxyId) {
+        removeLeaf(proxyId);
+        freeNode(proxyId);
+        proxyCount--;
+    }
+
+    /**
+     * Updates a proxy with its new tight box.
+     * @return true if the proxy had to be reinserted, false if it still fits its fat box
+     */
+    public boolean moveProxy(int proxyId, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        int b = proxyId * 6;
+        if (bounds[b] <= minX && bounds[b + 1] <= minY && bounds[b + 2] <= minZ &&
+            bounds[b + 3] >= maxX && bounds[b + 4] >= maxY && bounds[b + 5] >= maxZ) {
+            return false;
+        }
+        removeLeaf(proxyId);
+        setFatBounds(proxyId, minX, minY, minZ, maxX, maxY, maxZ);
+        insertLeaf(proxyId);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T getUserData(int proxyId) {
+        return (T) userData[proxyId];
+    }
+
+    public void clear() {
+        Arrays.fill(userData, null);
+        int capacity = height.length;
+        bounds = new float[0];
+        parent = new int[0];
+        child1 = new int[0];
+        child2 = new int[0];
+        height = new int[0];
+        userData = new Object[0];
+        root = NULL;
+        freeList = NULL;
+        nodeCount = 0;
+        proxyCount = 0;
+        grow(Math.min(capacity, 16));
+    }
+
+    // Queries. Results are appended to the given list and reflect the fattened leaf boxes,
+    // so callers needing exact answers should refine them against the tight bounds.
+
+    public List<T> queryAabb(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, List<T> results) {
+        int top = push(0, root);
+        while (top > 0) {
+            int node = stack[--top];
+            int b = node * 6;
+            if (bounds[b] > maxX || bounds[b + 3] < minX ||
+                bounds[b + 1] > maxY || bounds[b + 4] < minY ||
+                bounds[b + 2] > maxZ || bounds[b + 5] < minZ) {
+                continue;
+            }
+            top = visit(node, top, results);
+        }
+        return results;
+    }
+
+    public List<T> querySphere(float x, float y, float z, float radius, List<T> results) {
+        float radiusSquared = radius * radius;
+        int top = push(0, root);
+        while (top > 0) {
+            int node = stack[--top];
+            if (distanceSquared(node, x, y, z) > radiusSquared) {
+                continue;
+            }
+            top = visit(node, top, results);
+        }
+        return results;
+    }
+
+    /**
+     * Collects all proxies whose fat box is hit by the ray within maxDistance.
+     * The direction does not need to be normalized; distances are in units of its length.
+     */
+    public List<T> raycast(float ox, float oy, float oz, float dx, float dy, float dz, float maxDistance, List<T> results) {
+        float invX = 1.0f / dx, invY = 1.0f / dy, invZ = 1.0f / dz;
+        int top = push(0, root);
+        while (top > 0) {
+            int node = stack[--top];
+            if (rayEntry(node, ox, oy, oz, invX, invY, invZ) > maxDistance) {
+                continue;
+            }
+            top = visit(node, top, results);
+        }
+        return results;
+    }
+
+    /**
+     * Collects all proxies whose fat box intersects the frustum. Subtrees found to be
+     * fully inside are added without testing their descendants.
+     */
+    public List<T> queryFrustum(Frustum frustum, List<T> results) {
+        float[] planes = frustum.getPlanes();
+        int top = push(0, root);
+        while (top > 0) {
+            int node = stack[--top];
+            int classification = classify(node, planes);
+            if (classification == OUTSIDE) {
+                continue;
+            }
+            if (classification == INSIDE) {
+                collectSubtree(node, top, results);
+                continue;
+            }
+            top = visit(node, top, results);
+        }
+        return results;
+    }
+
+    // Adds every leaf below start, using the stack above the caller's entries
+    private void collectSubtree(int start, int base, List<T> results) {
+        int top = push(base, start);
+        while (top > base) {
+            top = visit(stack[--top], top, results);
+        }
+    }
+
+    // Adds a leaf to the results or pushes the children of an inner node
+    private int visit(int node, int top, List<T> results) {
+        if (height[node] == 0) {
+            results.add(getUserData(node));
+            return top;
+        }
+        top = push(top, child1[node]);
+        return push(top, child2[node]);
+    }
+
+    private int push(int top, int node) {
+        if (node == NULL) {
+            return top;
+        }
+        if (top == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[top] = node;
+        return top + 1;
+    }
+
+    private float distanceSquared(int node, float x, float y, float z) {
+        int b = node * 6;
+        float dx = Math.max(Math.max(bounds[b] - x, 0), x - bounds[b + 3]);
+        float dy = Math.max(Math.max(bounds[b + 1] - y, 0), y - bounds[b + 4]);
+        float dz = Math.max(Math.max(bounds[b + 2] - z, 0), z - bounds[b + 5]);
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    // Slab test, returns the entry distance or +infinity on a miss
+    private float rayEntry(int node, float ox, float oy, float oz, float invX, float invY, float invZ) {
+        int b = node * 6;
+        float t1 = (bounds[b] - ox) * invX, t2 = (bounds[b + 3] - ox) * invX;
+        float tMin = Math.min(t1, t2), tMax = Math.max(t1, t2);
+        t1 = (bounds[b + 1] - oy) * invY;
+        t2 = (bounds[b + 4] - oy) * invY;
+        tMin = Math.max(tMin, Math.min(t1, t2));
+        tMax = Math.min(tMax, Math.max(t1, t2));
+        t1 = (bounds[b + 2] - oz) * invZ;
+        t2 = (bounds[b + 5] - oz) * invZ;
+        tMin = Math.max(tMin, Math.min(t1, t2));
+        tMax = Math.min(tMax, Math.max(t1, t2));
+        if (tMax < Math.max(tMin, 0)) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return Math.max(tMin, 0);
+    }
+
+    private int classify(int node, float[] planes) {
+        int b = node * 6;
+        float cx = (bounds[b] + bounds[b + 3]) * 0.5f;
+        float cy = (bounds[b + 1] + bounds[b + 4]) * 0.5f;
+        float cz = (bounds[b + 2] + bounds[b + 5]) * 0.5f;
+        float ex = (bounds[b + 3] - bounds[b]) * 0.5f;
+        float ey = (bounds[b + 4] - bounds[b + 1]) * 0.5f;
+        float ez = (bounds[b + 5] - bounds[b + 2]) * 0.5f;
+        int result = INSIDE;
+        for (int i = 0; i < planes.length; i += 4) {
+            float a = planes[i], pb = planes[i + 1], c = planes[i + 2];
+            float distance = a * cx + pb * cy + c * cz + planes[i + 3];
+            float radius = Math.abs(a) * ex + Math.abs(pb) * ey + Math.abs(c) * ez;
+            if (distance < -radius) {
+                return OUTSIDE;
+            }
+            if (distance < radius) {
+                result = INTERSECT;
+            }
+        }
+        return result;
+    }
+
+    private void insertLeaf(int leaf) {
+        if (root == NULL) {
+            root = leaf;
+            parent[root] = NULL;
+            return;
+        }
+
+        // Descend towards the sibling with the lowest surface area cost
+        int index = root;
+        while (height[index] > 0) {
+            int c1 = child1[index];
+            int c2 = child2[index];
+            float area = area(index);
+            float combinedArea = unionArea(index, leaf);
+
+            // Cost of creating a new parent for this node and the leaf
+            float cost = 2.0f * combinedArea;
+            // Minimum cost of pushing the leaf further down the tree
+            float inheritanceCost = 2.0f * (combinedArea - area);
+
+            float cost1 = descendCost(c1, leaf) + inheritanceCost;
+            float cost2 = descendCost(c2, leaf) + inheritanceCost;
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+            index = cost1 < cost2 ? c1 : c2;
+        }
+
+        int sibling = index;
+        int oldParent = parent[sibling];
+        int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        userData[newParent] = null;
+        union(sibling, leaf, newParent);
+        height[newParent] = height[sibling] + 1;
+
+        if (oldParent != NULL) {
+            if (child1[oldParent] == sibling) {
+                child1[oldParent] = newParent;
+            } else {
+                child2[oldParent] = newParent;
+            }
+        } else {
+            root = newParent;
+        }
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+
+        refitUpwards(parent[leaf]);
+    }
+
+    private float descendCost(int child, int leaf) {
+        if (height[child] == 0) {
+            return unionArea(child, leaf);
+        }
+        return unionArea(child, leaf) - area(child);
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL;
+            return;
+        }
+
+        int p = parent[leaf];
+        int grandParent = parent[p];
+        int sibling = child1[p] == leaf ? child2[p] : child1[p];
+
+        if (grandParent != NULL) {
+            // Replace the parent with the sibling and refit the ancestors
+            if (child1[grandParent] == p) {
+                child1[grandParent] = sibling;
+            } else {
+                child2[grandParent] = sibling;
+            }
+            parent[sibling] = grandParent;
+            freeNode(p);
+            refitUpwards(grandParent);
+        } else {
+            root = sibling;
+            parent[sibling] = NULL;
+            freeNode(p);
+        }
+    }
+
+    // Walks up from the given node, rebalancing and refitting boxes and heights
+    private void refitUpwards(int index) {
+        while (index != NULL) {
+            index = balance(index);
+            int c1 = child1[index];
+            int c2 = child2[index];
+            height[index] = 1 + Math.max(height[c1], height[c2]);
+            union(c1, c2, index);
+            index = parent[index];
+        }
+    }
+
+    /**
+     * Performs a left or right rotation if node A is imbalanced.
+     * @return the new root of the rotated subtree
+     */
+    private int balance(int iA) {
+        if (height[iA] < 2) {
+            return iA;
+        }
+
+        int iB = child1[iA];
+        int iC = child2[iA];
+        int balance = height[iC] - height[iB];
+
+        // Rotate C up
+        if (balance > 1) {
+            int iF = child1[iC];
+            int iG = child2[iC];
+
+            child1[iC] = iA;
+            parent[iC] = parent[iA];
+            parent[iA] = iC;
+            replaceChild(parent[iC], iA, iC);
+
+            if (height[iF] > height[iG]) {
+                child2[iC] = iF;
+                child2[iA] = iG;
+                parent[iG] = iA;
+                union(iB, iG, iA);
+                union(iA, iF, iC);
+                height[iA] = 1 + Math.max(height[iB], height[iG]);
+                height[iC] = 1 + Math.max(height[iA], height[iF]);
+            } else {
+                child2[iC] = iG;
+                child2[iA] = iF;
+                parent[iF] = iA;
+                union(iB, iF, iA);
+                union(iA, iG, iC);
+                height[iA] = 1 + Math.max(height[iB], height[iF]);
+                height[iC] = 1 + Math.max(height[iA], height[iG]);
+            }
+            return iC;
+        }
+
+        // Rotate B up
+        if (balance < -1) {
+            int iD = child1[iB];
+            int iE = child2[iB];
+
+            child1[iB] = iA;
+            parent[iB] = parent[iA];
+            parent[iA] = iB;
+            replaceChild(parent[iB], iA, iB);
+
+            if (height[iD] > height[iE]) {
+                child2[iB] = iD;
+                child1[iA] = iE;
+                parent[iE] = iA;
+                union(iC, iE, iA);
+                union(iA, iD, iB);
+                height[iA] = 1 + Math.max(height[iC], height[iE]);
+                height[iB] = 1 + Math.max(height[iA], height[iD]);
+            } else {
+                child2[iB] = iE;
+                child1[iA] = iD;
+                parent[iD] = iA;
+                union(iC, iD, iA);
+                union(iA, iE, iB);
+                height[iA] = 1 + Math.max(height[iC], height[iD]);
+                height[iB] = 1 + Math.max(height[iA], height[iE]);
+            }
+            return iB;
+        }
+
+        return iA;
+    }
+
+    private void replaceChild(int node, int oldChild, int newChild) {
+        if (node == NULL) {
+            root = newChild;
+        } else if (child1[node] == oldChild) {
+            child1[node] = newChild;
+        } else {
+            child2[node] = newChild;
+        }
+    }
+
+    private void setFatBounds(int node, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        int b = node * 6;
+        bounds[b] = minX - margin;
+        bounds[b + 1] = minY - margin;
+        bounds[b + 2] = minZ - margin;
+        bounds[b + 3] = maxX + margin;
+        bounds[b + 4] = maxY + margin;
+        bounds[b + 5] = maxZ + margin;
+    }
+
+    private void union(int a, int b, int dest) {
+        int ia = a * 6, ib = b * 6, id = dest * 6;
+        bounds[id] = Math.min(bounds[ia], bounds[ib]);
+        bounds[id + 1] = Math.min(bounds[ia + 1], bounds[ib + 1]);
+        bounds[id + 2] = Math.min(bounds[ia + 2], bounds[ib + 2]);
+        bounds[id + 3] = Math.max(bounds[ia + 3], bounds[ib + 3]);
+        bounds[id + 4] = Math.max(bounds[ia + 4], bounds[ib + 4]);
+        bounds[id + 5] = Math.max(bounds[ia + 5], bounds[ib + 5]);
+    }
+
+    // Surface area, the cost metric for insertion
+    private float area(int node) {
+        int b = node * 6;
+        float dx = bounds[b + 3] - bounds[b];
+        float dy = bounds[b + 4] - bounds[b + 1];
+        float dz = bounds[b + 5] - bounds[b + 2];
+        return 2.0f * (dx * dy + dy * dz + dz * dx);
+    }
+
+    private float unionArea(int a, int b) {
+        int ia = a * 6, ib = b * 6;
+        float dx = Math.max(bounds[ia + 3], bounds[ib + 3]) - Math.min(bounds[ia], bounds[ib]);
+        float dy = Math.max(bounds[ia + 4], bounds[ib + 4]) - Math.min(bounds[ia + 1], bounds[ib + 1]);
+        float dz = Math.max(bounds[ia + 5], bounds[ib + 5]) - Math.min(bounds[ia + 2], bounds[ib + 2]);
+        return 2.0f * (dx * dy + dy * dz + dz * dx);
+    }
+
+    private int allocateNode() {
+        if (freeList == NULL) {
+            grow(height.length * 2);
+        }
+        int node = freeList;
+        freeList = parent[node];
+        parent[node] = NULL;
+        child1[node] = NULL;
+        child2[node] = NULL;
+        height[node] = 0;
+        nodeCount++;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        parent[node] = freeList;
+        height[node] = -1;
+        userData[node] = null;
+        freeList = node;
+        nodeCount--;
+    }
+
+    private void grow(int capacity) {
+        int oldCapacity = height.length;
+        bounds = Arrays.copyOf(bounds, capacity * 6);
+        parent = Arrays.copyOf(parent, capacity);
+        child1 = Arrays.copyOf(child1, capacity);
+        child2 = Arrays.copyOf(child2, capacity);
+        height = Arrays.copyOf(height, capacity);
+        userData = Arrays.copyOf(userData, capacity);
+
+        // Chain the new nodes into the free list
+        for (int i = oldCapacity; i < capacity - 1; i++) {
+            parent[i] = i + 1;
+            height[i] = -1;
+        }
+        parent[capacity - 1] = freeList;
+        height[capacity - 1] = -1;
+        freeList = oldCapacity;
+    }
+
+    public int getProxyCount() { return proxyCount; }
+    public int getNodeCount() { return nodeCount; }
+    public int getHeight() { return root == NULL ? 0 : height[root]; }
+}
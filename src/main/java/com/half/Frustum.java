@@ -0,0 +1,145 @@
+package com.half;
+
+import org.joml.Matrix4fc;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Frustum - six clip planes extracted from a view-projection matrix
+ * (Gribb/Hartmann), with sphere and AABB tests.
+ * Planes are packed as (a, b, c, d) quadruples with normalized (a, b, c) pointing inwards.
+ */
+public class Frustum {
+    private static final int PARALLEL_THRESHOLD = 32768; // Slots above which culling is split across cores
+    private static final int CHUNK_SIZE = 8192;
+
+    private final float[] planes = new float[6 * 4];
+    private int culledCount; // Active slots rejected by the last cull()
+
+    /**
+     * Extracts the planes of the given view-projection matrix.
+     */
+    public void update(Matrix4fc viewProjection) {
+        Matrix4fc m = viewProjection;
+        setPlane(0, m.m03() + m.m00(), m.m13() + m.m10(), m.m23() + m.m20(), m.m33() + m.m30()); // Left
+        setPlane(1, m.m03() - m.m00(), m.m13() - m.m10(), m.m23() - m.m20(), m.m33() - m.m30()); // Right
+        setPlane(2, m.m03() + m.m01(), m.m13() + m.m11(), m.m23() + m.m21(), m.m33() + m.m31()); // Bottom
+        setPlane(3, m.m03() - m.m01(), m.m13() - m.m11(), m.m23() - m.m21(), m.m33() - m.m31()); // Top
+        setPlane(4, m.m03() + m.m02(), m.m13() + m.m12(), m.m23() + m.m22(), m.m33() + m.m32()); // Near
+        setPlane(5, m.m03() - m.m02(), m.m13() - m.m12(), m.m23() - m.m22(), m.m33() - m.m32()); // Far
+    }
+
+    private void setPlane(int index, float a, float b, float c, float d) {
+        float invLength = 1.0f / (float) Math.sqrt(a * a + b * b + c * c);
+        int i = index * 4;
+        planes[i] = a * invLength;
+        planes[i + 1] = b * invLength;
+        planes[i + 2] = c * invLength;
+        planes[i + 3] = d * invLength;
+    }
+
+    public boolean testSphere(float x, float y, float z, float radius) {
+        for (int i = 0; i < planes.length; i += 4) {
+            if (planes[i] * x + planes[i + 1] * y + planes[i + 2] * z + planes[i + 3] < -radius) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tests an axis-aligned box given by its center and half extents.
+     * Conservative: boxes straddling a frustum corner may be reported visible.
+     */
+    public boolean testAabb(float cx, float cy, float cz, float ex, float ey, float ez) {
+        for (int i = 0; i < planes.length; i += 4) {
+            float a = planes[i], b = planes[i + 1], c = planes[i + 2];
+            float distance = a * cx + b * cy + c * cz + planes[i + 3];
+            float radius = Math.abs(a) * ex + Math.abs(b) * ey + Math.abs(c) * ez;
+            if (distance < -radius) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Culls every slot of a store in one linear pass over its packed world AABBs,
+     * setting or clearing {@link TransformStore#FLAG_CULLED}.
+     * World bounds must be current (see {@link TransformStore#updateMatrices()}).
+     * @return number of active slots that are visible
+     */
+    public int cull(TransformStore store) {
+        final int size = store.size;
+        long counts;
+        if (size < PARALLEL_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            counts = cullRange(store, 0, size);
+        } else {
+            int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            counts = IntStream.range(0, chunks).parallel()
+                .mapToLong(chunk -> cullRange(store, chunk * CHUNK_SIZE, Math.min(size, (chunk + 1) * CHUNK_SIZE)))
+                .sum();
+        }
+        culledCount = (int) (counts >>> 32);
+        return (int) counts;
+    }
+
+    /**
+     * Culls slots [from, to).
+     * @return culled count in the high 32 bits, visible count in the low 32 bits, so results can be summed
+     */
+    private long cullRange(TransformStore store, int from, int to) {
+        final float[] worldBounds = store.worldBounds;
+        final byte[] flags = store.flags;
+        long visible = 0;
+        long culled = 0;
+
+        // Planes hoisted into locals; the absolute normals are shared by every box
+        final float[] p = planes;
+        final float a0 = p[0], b0 = p[1], c0 = p[2], d0 = p[3];
+        final float a1 = p[4], b1 = p[5], c1 = p[6], d1 = p[7];
+        final float a2 = p[8], b2 = p[9], c2 = p[10], d2 = p[11];
+        final float a3 = p[12], b3 = p[13], c3 = p[14], d3 = p[15];
+        final float a4 = p[16], b4 = p[17], c4 = p[18], d4 = p[19];
+        final float a5 = p[20], b5 = p[21], c5 = p[22], d5 = p[23];
+        final float aa0 = Math.abs(a0), ab0 = Math.abs(b0), ac0 = Math.abs(c0);
+        final float aa1 = Math.abs(a1), ab1 = Math.abs(b1), ac1 = Math.abs(c1);
+        final float aa2 = Math.abs(a2), ab2 = Math.abs(b2), ac2 = Math.abs(c2);
+        final float aa3 = Math.abs(a3), ab3 = Math.abs(b3), ac3 = Math.abs(c3);
+        final float aa4 = Math.abs(a4), ab4 = Math.abs(b4), ac4 = Math.abs(c4);
+        final float aa5 = Math.abs(a5), ab5 = Math.abs(b5), ac5 = Math.abs(c5);
+
+        for (int slot = from; slot < to; slot++) {
+            int o = slot * 6;
+            float cx = worldBounds[o], cy = worldBounds[o + 1], cz = worldBounds[o + 2];
+            float ex = worldBounds[o + 3], ey = worldBounds[o + 4], ez = worldBounds[o + 5];
+
+            // Non-short-circuit '&' keeps the loop branch free, which matters when visibility is mixed
+            boolean inside =
+                a0 * cx + b0 * cy + c0 * cz + d0 >= -(aa0 * ex + ab0 * ey + ac0 * ez) &
+                a1 * cx + b1 * cy + c1 * cz + d1 >= -(aa1 * ex + ab1 * ey + ac1 * ez) &
+                a2 * cx + b2 * cy + c2 * cz + d2 >= -(aa2 * ex + ab2 * ey + ac2 * ez) &
+                a3 * cx + b3 * cy + c3 * cz + d3 >= -(aa3 * ex + ab3 * ey + ac3 * ez) &
+                a4 * cx + b4 * cy + c4 * cz + d4 >= -(aa4 * ex + ab4 * ey + ac4 * ez) &
+                a5 * cx + b5 * cy + c5 * cz + d5 >= -(aa5 * ex + ab5 * ey + ac5 * ez);
+
+            int f = flags[slot];
+            int outside = inside ? 0 : 1;
+            int active = f & TransformStore.FLAG_ACTIVE;
+            flags[slot] = (byte) ((f & ~TransformStore.FLAG_CULLED) | (outside * TransformStore.FLAG_CULLED));
+            visible += active & (outside ^ 1);
+            culled += active & outside;
+        }
+        return (culled << 32) | visible;
+    }
+
+    public int getCulledCount() {
+        return culledCount;
+    }
+
+    // Packed planes, read-only
+    public float[] getPlanes() {
+        return planes;
+    }
+}
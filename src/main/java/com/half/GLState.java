@@ -0,0 +1,283 @@
+package com.half;
+
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.opengl.GL40.*;
+
+/**
+ * GLState - CPU-side shadow of the GL state the engine changes, so redundant binds and
+ * enables never reach the driver. All state changes of Mesh, Shader, the renderers and
+ * Scene go through here; code calling GL directly must call {@link #reset()} afterwards.
+ *
+ * Values start out unknown, so the first change of each is always issued. Call reset()
+ * whenever a new context is made current; the calling thread becomes the render thread,
+ * which {@link #checkRenderThread} enforces. Like GL itself, this is single threaded.
+ */
+public final class GLState {
+    private static final int UNKNOWN = -1;
+
+    // Tracked enable capabilities
+    private static final int[] CAPABILITIES = { GL_DEPTH_TEST, GL_CULL_FACE, GL_BLEND, GL_SCISSOR_TEST, GL_STENCIL_TEST };
+
+    private static int program = UNKNOWN;
+    private static int vertexArray = UNKNOWN;
+    private static int arrayBuffer = UNKNOWN;
+    private static int elementBuffer = UNKNOWN; // Part of the bound VAO's state
+    private static int copyReadBuffer = UNKNOWN;
+    private static int copyWriteBuffer = UNKNOWN;
+    private static int drawIndirectBuffer = UNKNOWN;
+    private static final byte[] enabled = new byte[CAPABILITIES.length];
+    private static int blendSrc = UNKNOWN;
+    private static int blendDst = UNKNOWN;
+    private static int depthMask = UNKNOWN;
+    private static int depthFunc = UNKNOWN;
+    private static int cullFace = UNKNOWN;
+    private static Thread renderThread; // Thread of the last reset(), null before any context
+
+    // Per-frame statistics
+    private static int binds;
+    private static int stateChanges;
+    private static int skipped;
+
+    static {
+        Arrays.fill(enabled, (byte) UNKNOWN);
+    }
+
+    private GLState() {
+    }
+
+    /**
+     * Fails fast when GL resources are created off the render thread, e.g. by a game
+     * object built inside a parallel update instead of through JobSystem.defer.
+     */
+    public static void checkRenderThread(String what) {
+        if (renderThread != null && Thread.currentThread() != renderThread) {
+            throw new IllegalStateException(what + " must be used on the render thread, not "
+                + Thread.currentThread().getName());
+        }
+    }
+
+    /**
+     * Forgets all cached values. Needed after creating a context or after code
+     * changed state behind the tracker's back.
+     */
+    public static void reset() {
+        renderThread = Thread.currentThread();
+        program = UNKNOWN;
+        vertexArray = UNKNOWN;
+        arrayBuffer = UNKNOWN;
+        elementBuffer = UNKNOWN;
+        copyReadBuffer = UNKNOWN;
+        copyWriteBuffer = UNKNOWN;
+        drawIndirectBuffer = UNKNOWN;
+        Arrays.fill(enabled, (byte) UNKNOWN);
+        blendSrc = UNKNOWN;
+        blendDst = UNKNOWN;
+        depthMask = UNKNOWN;
+        depthFunc = UNKNOWN;
+        cullFace = UNKNOWN;
+    }
+
+    public static void useProgram(int id) {
+        if (program == id) {
+            skipped++;
+            return;
+        }
+        glUseProgram(id);
+        program = id;
+        binds++;
+    }
+
+    public static void bindVertexArray(int id) {
+        if (vertexArray == id) {
+            skipped++;
+            return;
+        }
+        glBindVertexArray(id);
+        vertexArray = id;
+        elementBuffer = UNKNOWN; // The element binding belongs to the VAO
+        binds++;
+    }
+
+    /**
+     * Binds a buffer. Note that GL_ELEMENT_ARRAY_BUFFER is stored in the bound VAO,
+     * so bind the intended VAO (or 0) first.
+     */
+    public static void bindBuffer(int target, int id) {
+        switch (target) {
+            case GL_ARRAY_BUFFER:
+                if (arrayBuffer == id) break;
+                arrayBuffer = id;
+                issueBind(target, id);
+                return;
+            case GL_ELEMENT_ARRAY_BUFFER:
+                if (elementBuffer == id) break;
+                elementBuffer = id;
+                issueBind(target, id);
+                return;
+            case GL_COPY_READ_BUFFER:
+                if (copyReadBuffer == id) break;
+                copyReadBuffer = id;
+                issueBind(target, id);
+                return;
+            case GL_COPY_WRITE_BUFFER:
+                if (copyWriteBuffer == id) break;
+                copyWriteBuffer = id;
+                issueBind(target, id);
+                return;
+            case GL_DRAW_INDIRECT_BUFFER:
+                if (drawIndirectBuffer == id) break;
+                drawIndirectBuffer = id;
+                issueBind(target, id);
+                return;
+            default:
+                issueBind(target, id); // Untracked target
+                return;
+        }
+        skipped++;
+    }
+
+    private static void issueBind(int target, int id) {
+        glBindBuffer(target, id);
+        binds++;
+    }
+
+    public static void enable(int capability) {
+        setEnabled(capability, true);
+    }
+
+    public static void disable(int capability) {
+        setEnabled(capability, false);
+    }
+
+    public static void setEnabled(int capability, boolean value) {
+        int index = indexOf(capability);
+        byte state = (byte) (value ? 1 : 0);
+        if (index >= 0) {
+            if (enabled[index] == state) {
+                skipped++;
+                return;
+            }
+            enabled[index] = state;
+        }
+        if (value) {
+            glEnable(capability);
+        } else {
+            glDisable(capability);
+        }
+        stateChanges++;
+    }
+
+    /**
+     * Returns whether a capability is enabled, asking GL only if the value is unknown.
+     */
+    public static boolean isEnabled(int capability) {
+        int index = indexOf(capability);
+        if (index < 0) {
+            return glIsEnabled(capability);
+        }
+        if (enabled[index] == UNKNOWN) {
+            enabled[index] = (byte) (glIsEnabled(capability) ? 1 : 0);
+        }
+        return enabled[index] == 1;
+    }
+
+    public static void blendFunc(int src, int dst) {
+        if (blendSrc == src && blendDst == dst) {
+            skipped++;
+            return;
+        }
+        glBlendFunc(src, dst);
+        blendSrc = src;
+        blendDst = dst;
+        stateChanges++;
+    }
+
+    public static void depthMask(boolean flag) {
+        int value = flag ? 1 : 0;
+        if (depthMask == value) {
+            skipped++;
+            return;
+        }
+        glDepthMask(flag);
+        depthMask = value;
+        stateChanges++;
+    }
+
+    public static void depthFunc(int func) {
+        if (depthFunc == func) {
+            skipped++;
+            return;
+        }
+        glDepthFunc(func);
+        depthFunc = func;
+        stateChanges++;
+    }
+
+    public static void cullFace(int mode) {
+        if (cullFace == mode) {
+            skipped++;
+            return;
+        }
+        glCullFace(mode);
+        cullFace = mode;
+        stateChanges++;
+    }
+
+    // Deleting a bound object unbinds it, so the cache has to follow
+
+    public static void deleteProgram(int id) {
+        glDeleteProgram(id);
+        // A program in use stays current until another one is installed, so keep the cache
+    }
+
+    public static void deleteVertexArray(int id) {
+        glDeleteVertexArrays(id);
+        if (vertexArray == id) {
+            vertexArray = 0;
+            elementBuffer = UNKNOWN;
+        }
+    }
+
+    public static void deleteBuffer(int id) {
+        glDeleteBuffers(id);
+        if (arrayBuffer == id) arrayBuffer = 0;
+        if (elementBuffer == id) elementBuffer = 0;
+        if (copyReadBuffer == id) copyReadBuffer = 0;
+        if (copyWriteBuffer == id) copyWriteBuffer = 0;
+        if (drawIndirectBuffer == id) drawIndirectBuffer = 0;
+    }
+
+    private static int indexOf(int capability) {
+        for (int i = 0; i < CAPABILITIES.length; i++) {
+            if (CAPABILITIES[i] == capability) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Starts a new statistics frame.
+     */
+    public static void resetStats() {
+        binds = 0;
+        stateChanges = 0;
+        skipped = 0;
+    }
+
+    // Program, VAO and buffer binds issued since resetStats()
+    public static int getBindCount() { return binds; }
+    // Enables, blend, depth and cull changes issued since resetStats()
+    public static int getStateChangeCount() { return stateChanges; }
+    // Redundant calls that were not forwarded since resetStats()
+    public static int getSkippedCount() { return skipped; }
+
+    public static int getProgram() { return program; }
+    public static int getVertexArray() { return vertexArray; }
+}
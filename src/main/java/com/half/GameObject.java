@@ -1,35 +1,39 @@
 package com.half;
 
 import org.joml.Vector3f;
+import org.joml.Vector3fc;
 import org.joml.Vector4f;
+import org.joml.Vector4fc;
 
 /**
  * Base class for all game objects in the scene.
  * Handles common properties like position, rotation, scale, and physics.
+ * Spatial and physics state is stored in the transform's {@link TransformStore} slot.
  */
 public abstract class GameObject implements Renderable {
     protected Transform transform;
-    protected Vector3f velocity;
+    protected GameObject parent;
     protected Mesh mesh;
-    protected boolean active;
     protected String name;
     protected float rotationSpeed;
-    protected Vector4f color;
 
-    // Physics properties
-    protected boolean hasPhysics;
-    protected Vector3f bounds; // For collision detection
+    // Velocity, bounds, color and flags live in the transform's store slot;
+    // these read-only views are created on first use
+    private Vector3f velocityView;
+    private Vector3f boundsView;
+    private Vector4f colorView;
+
+    // Spatial index bookkeeping, owned by the Scene
+    int proxyId = -1;
+    int proxyStamp = -1; // World stamp the proxy was last synced at
+    int broadphaseId = -1;
+    int lodLevel; // Level of detail picked in the last rendered frame
 
     public GameObject(String name, Mesh mesh) {
         this.name = name;
         this.mesh = mesh;
-        this.transform = new Transform();
-        this.velocity = new Vector3f(0, 0, 0);
-        this.active = true;
-        this.hasPhysics = false;
-        this.bounds = new Vector3f(1, 1, 1); // Default unit cube bounds
+        this.transform = new Transform(); // Active, no physics, unit bounds, white
         this.rotationSpeed = 0.0f;
-        this.color = new Vector4f(1.0f, 1.0f, 1.0f, 1.0f); // Default to white
     }
 
     // Core lifecycle methods
@@ -37,115 +41,140 @@ public abstract class GameObject implements Renderable {
     public abstract void update(float deltaTime);
     public abstract void onCollision(GameObject other);
 
-    // Physics update
+    // Physics update for objects updated outside a Scene; a Scene integrates its whole
+    // TransformStore in one pass, so this does nothing once the transform is attached
     public void updatePhysics(float deltaTime) {
-        if (!hasPhysics) return;
+        if (!hasPhysics() || transform.isAttached()) return;
 
         // Apply velocity
-        transform.getPosition().x += velocity.x * deltaTime;
-        transform.getPosition().y += velocity.y * deltaTime;
-        transform.getPosition().z += velocity.z * deltaTime;
+        transform.getStore().integrate(transform.getSlot(), deltaTime);
     }
 
-    // Collision detection (AABB)
+    // Collision detection (AABB), reads the stores directly so no vectors are allocated
     public boolean checkCollision(GameObject other) {
-        if (!hasPhysics || !other.hasPhysics) return false;
-
-        Vector3f thisMin = new Vector3f(
-                transform.getPosition().x - bounds.x * transform.getScale().x,
-                transform.getPosition().y - bounds.y * transform.getScale().y,
-                transform.getPosition().z - bounds.z * transform.getScale().z
-        );
-        Vector3f thisMax = new Vector3f(
-                transform.getPosition().x + bounds.x * transform.getScale().x,
-                transform.getPosition().y + bounds.y * transform.getScale().y,
-                transform.getPosition().z + bounds.z * transform.getScale().z
-        );
-
-        Vector3f otherMin = new Vector3f(
-                other.transform.getPosition().x - other.bounds.x * other.transform.getScale().x,
-                other.transform.getPosition().y - other.bounds.y * other.transform.getScale().y,
-                other.transform.getPosition().z - other.bounds.z * other.transform.getScale().z
-        );
-        Vector3f otherMax = new Vector3f(
-                other.transform.getPosition().x + other.bounds.x * other.transform.getScale().x,
-                other.transform.getPosition().y + other.bounds.y * other.transform.getScale().y,
-                other.transform.getPosition().z + other.bounds.z * other.transform.getScale().z
-        );
-
-        return (thisMin.x <= otherMax.x && thisMax.x >= otherMin.x) &&
-                (thisMin.y <= otherMax.y && thisMax.y >= otherMin.y) &&
-                (thisMin.z <= otherMax.z && thisMax.z >= otherMin.z);
+        if (!hasPhysics() || !other.hasPhysics()) return false;
+
+        TransformStore a = transform.getStore();
+        TransformStore b = other.transform.getStore();
+        int i = transform.getSlot() * 3;
+        int j = other.transform.getSlot() * 3;
+
+        for (int axis = 0; axis < 3; axis++) {
+            float thisExtent = a.bounds[i + axis] * a.scale[i + axis];
+            float otherExtent = b.bounds[j + axis] * b.scale[j + axis];
+            if (Math.abs(a.position[i + axis] - b.position[j + axis]) > thisExtent + otherExtent) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public void render() {
-        if (!active || mesh == null) return;
+        if (!isActive() || mesh == null) return;
         mesh.render();
     }
 
     @Override
     public void cleanup() {
+        // Meshes may be shared through MeshCache, so only drop our reference
         if (mesh != null) {
-            mesh.cleanup();
+            mesh.release();
+            mesh = null;
         }
     }
 
     // Getters and setters
     public Transform getTransform() { return transform; }
 
-    public Vector3f getPosition() { return transform.getPosition(); }
-    public void setPosition(Vector3f position) { this.transform.setPosition(position); }
+    // Attaches this object under another one; its transform then becomes relative to the parent
+    public void setParent(GameObject parent) {
+        transform.setParent(parent != null ? parent.transform : null);
+        this.parent = parent;
+    }
+    public GameObject getParent() { return parent; }
+
+    public Vector3fc getPosition() { return transform.getPosition(); }
+    public void setPosition(Vector3fc position) { this.transform.setPosition(position); }
     public void setPosition(float x, float y, float z) { this.transform.setPosition(x, y, z); }
 
-    public Vector3f getRotation() { return transform.getRotation(); }
-    public void setRotation(Vector3f rotation) { this.transform.setRotation(rotation); }
+    public Vector3fc getRotation() { return transform.getRotation(); }
+    public void setRotation(Vector3fc rotation) { this.transform.setRotation(rotation); }
     public void setRotation(float x, float y, float z) { this.transform.setRotation(x, y, z); }
 
-    public Vector3f getScale() { return transform.getScale(); }
-    public void setScale(Vector3f scale) { this.transform.setScale(scale); }
+    public Vector3fc getScale() { return transform.getScale(); }
+    public void setScale(Vector3fc scale) { this.transform.setScale(scale); }
     public void setScale(float x, float y, float z) { this.transform.setScale(x, y, z); }
 
-    public Vector3f getVelocity() { return velocity; }
+    public Vector3fc getVelocity() {
+        if (velocityView == null) velocityView = new Vector3f();
+        return transform.getStore().getVelocity(transform.getSlot(), velocityView);
+    }
     
-    public void setVelocity(Vector3f velocity) { this.velocity = velocity; }
-    public void setVelocity(float x, float y, float z) { this.velocity.set(x, y, z); }
+    public void setVelocity(Vector3fc velocity) { setVelocity(velocity.x(), velocity.y(), velocity.z()); }
+    public void setVelocity(float x, float y, float z) { transform.getStore().setVelocity(transform.getSlot(), x, y, z); }
     
-    public boolean isActive() { return active; }
-    public void setActive(boolean active) { this.active = active; }
+    public boolean isActive() { return transform.getStore().hasFlag(transform.getSlot(), TransformStore.FLAG_ACTIVE); }
+    public void setActive(boolean active) { transform.getStore().setFlag(transform.getSlot(), TransformStore.FLAG_ACTIVE, active); }
 
-    public boolean isVisible() { return active; } // Assuming active means visible for now
+    // Active and not frustum culled in the last rendered frame
+    public boolean isVisible() {
+        byte flags = transform.getStore().flags[transform.getSlot()];
+        return (flags & TransformStore.FLAG_ACTIVE) != 0 && (flags & TransformStore.FLAG_CULLED) == 0;
+    }
     
-    public boolean hasPhysics() { return hasPhysics; }
-    public void setHasPhysics(boolean hasPhysics) { this.hasPhysics = hasPhysics; }
+    public boolean hasPhysics() { return transform.getStore().hasFlag(transform.getSlot(), TransformStore.FLAG_PHYSICS); }
+    public void setHasPhysics(boolean hasPhysics) { transform.getStore().setFlag(transform.getSlot(), TransformStore.FLAG_PHYSICS, hasPhysics); }
     
-    public Vector3f getBounds() { return bounds; }
-    public void setBounds(Vector3f bounds) { this.bounds = bounds; }
+    public Vector3fc getBounds() {
+        if (boundsView == null) boundsView = new Vector3f();
+        return transform.getStore().getBounds(transform.getSlot(), boundsView);
+    }
+    public void setBounds(Vector3fc bounds) { setBounds(bounds.x(), bounds.y(), bounds.z()); }
+    public void setBounds(float x, float y, float z) { transform.getStore().setBounds(transform.getSlot(), x, y, z); }
     
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
     
     public Mesh getMesh() { return mesh; }
-    public void setMesh(Mesh mesh) { this.mesh = mesh; }
+    // The mesh's level of detail selected for this object, which is what gets drawn.
+    // Falls back to the full mesh while the level is still loading; null if nothing can be drawn
+    public Mesh getRenderMesh() {
+        if (mesh == null) return null;
+        Mesh lod = mesh.getLod(lodLevel);
+        if (lod.isDrawable()) return lod;
+        return mesh.isDrawable() ? mesh : null;
+    }
+    public int getLodLevel() { return lodLevel; }
+    // Takes ownership of one reference to the new mesh and releases the old one
+    public void setMesh(Mesh mesh) {
+        if (this.mesh != null && this.mesh != mesh) {
+            this.mesh.release();
+        }
+        this.mesh = mesh;
+    }
 
     public float getRotationSpeed() { return rotationSpeed; }
     public void setRotationSpeed(float rotationSpeed) { this.rotationSpeed = rotationSpeed; }
 
-    public Vector4f getColor() { return color; }
+    public Vector4fc getColor() {
+        if (colorView == null) colorView = new Vector4f();
+        return transform.getStore().getColor(transform.getSlot(), colorView);
+    }
     @Override
-    public void setColor(float r, float g, float b, float a) { this.color.set(r, g, b, a); }
+    public void setColor(float r, float g, float b, float a) { transform.getStore().setColor(transform.getSlot(), r, g, b, a); }
     
     @Override
     public String toString() {
         return "GameObject{" +
                 "name='" + name + "'" +
                 ", transform=" + transform +
-                ", velocity=" + velocity +
-                ", active=" + active +
-                ", hasPhysics=" + hasPhysics +
-                ", bounds=" + bounds +
+                ", velocity=" + getVelocity() +
+                ", active=" + isActive() +
+                ", hasPhysics=" + hasPhysics() +
+                ", bounds=" + getBounds() +
                 ", rotationSpeed=" + rotationSpeed +
-                ", color=" + color +
+                ", color=" + getColor() +
                 ", hashCode=" + hashCode() +
                 ", Mesh hashCode=" + (mesh != null ? mesh.hashCode() : "null") +
                 "}";
@@ -156,14 +185,14 @@ public abstract class GameObject implements Renderable {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         GameObject other = (GameObject) obj;
-        return active == other.active && 
-               hasPhysics == other.hasPhysics &&
+        return isActive() == other.isActive() && 
+               hasPhysics() == other.hasPhysics() &&
                Float.compare(rotationSpeed, other.rotationSpeed) == 0 &&
                name.equals(other.name) &&
                transform.equals(other.transform) &&
-               velocity.equals(other.velocity) &&
-               bounds.equals(other.bounds) &&
-               color.equals(other.color) &&
+               getVelocity().equals(other.getVelocity()) &&
+               getBounds().equals(other.getBounds()) &&
+               getColor().equals(other.getColor()) &&
                (mesh == other.mesh || (mesh != null && mesh.equals(other.mesh)));
     }
     
@@ -171,12 +200,12 @@ public abstract class GameObject implements Renderable {
     public int hashCode() {
         int result = name != null ? name.hashCode() : 0;
         result = 31 * result + (transform != null ? transform.hashCode() : 0);
-        result = 31 * result + (velocity != null ? velocity.hashCode() : 0);
-        result = 31 * result + (active ? 1 : 0);
-        result = 31 * result + (hasPhysics ? 1 : 0);
+        result = 31 * result + getVelocity().hashCode();
+        result = 31 * result + (isActive() ? 1 : 0);
+        result = 31 * result + (hasPhysics() ? 1 : 0);
         result = 31 * result + Float.hashCode(rotationSpeed);
-        result = 31 * result + (bounds != null ? bounds.hashCode() : 0);
-        result = 31 * result + (color != null ? color.hashCode() : 0);
+        result = 31 * result + getBounds().hashCode();
+        result = 31 * result + getColor().hashCode();
         result = 31 * result + (mesh != null ? mesh.hashCode() : 0);
         return result;
     }
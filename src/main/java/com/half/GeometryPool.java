@@ -0,0 +1,229 @@
+package com.half;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+
+/**
+ * GeometryPool - one VAO with a shared vertex and index buffer from which static meshes
+ * sub-allocate their data. A pooled mesh is just (baseVertex, firstIndex, indexCount),
+ * so any number of them draw without switching VAOs, and consecutive draws can be
+ * merged into a single glMultiDrawElementsIndirect call.
+ *
+ * Ranges are managed by a {@link RangeAllocator} per buffer. When one runs out of space,
+ * the buffer is reallocated at twice the size and the old contents are copied on the GPU.
+ * All meshes in a pool share its {@link VertexFormat}. Indices are 16 bits, relative to
+ * each mesh's baseVertex, so meshes of up to 65536 vertices fit.
+ */
+public class GeometryPool {
+    public static final int INDEX_TYPE = GL_UNSIGNED_SHORT;
+
+    private final VertexFormat format;
+    private int vaoId;
+    private int vboId;
+    private int eboId;
+    private final RangeAllocator vertexRanges;
+    private final RangeAllocator indexRanges;
+    private int instanceVboId; // Instance buffer currently wired into the VAO
+    private int firstInstance;
+    private int meshCount;
+    private int growCount;
+
+    public GeometryPool(int vertexCapacity, int indexCapacity) {
+        this(vertexCapacity, indexCapacity, VertexFormat.FLOAT);
+    }
+
+    public GeometryPool(int vertexCapacity, int indexCapacity, VertexFormat format) {
+        if (vertexCapacity < 1 || indexCapacity < 1) {
+            throw new IllegalArgumentException("Pool capacities must be positive");
+        }
+        this.format = format;
+        vertexRanges = new RangeAllocator(vertexCapacity);
+        indexRanges = new RangeAllocator(indexCapacity);
+
+        vaoId = glGenVertexArrays();
+        if (vaoId == 0) {
+            throw new RuntimeException("Failed to create VAO");
+        }
+        GpuResourceRegistry.register(GpuResourceRegistry.Type.VERTEX_ARRAY, vaoId, 0, "GeometryPool");
+        vboId = createBuffer((long) vertexCapacity * format.getStride(), "GeometryPool vertices");
+        eboId = createBuffer((long) indexCapacity * Short.BYTES, "GeometryPool indices");
+        setupVertexArray();
+    }
+
+    // Allocates an uninitialized static buffer, bound to GL_COPY_WRITE_BUFFER so no VAO is touched
+    private static int createBuffer(long bytes, String label) {
+        int id = glGenBuffers();
+        if (id == 0) {
+            throw new RuntimeException("Failed to create pool buffer");
+        }
+        GpuResourceRegistry.register(GpuResourceRegistry.Type.BUFFER, id, bytes, label);
+        GLState.bindBuffer(GL_COPY_WRITE_BUFFER, id);
+        glBufferData(GL_COPY_WRITE_BUFFER, bytes, GL_STATIC_DRAW);
+        return id;
+    }
+
+    // Points the VAO at the current buffers; needed again whenever a buffer is replaced
+    private void setupVertexArray() {
+        GLState.bindVertexArray(vaoId);
+        GLState.bindBuffer(GL_ARRAY_BUFFER, vboId);
+        format.setupAttributes();
+        GLState.bindBuffer(GL_ELEMENT_ARRAY_BUFFER, eboId);
+    }
+
+    /**
+     * Copies a mesh's vertices, already encoded in the pool's format, into the pool
+     * and records its ranges on the mesh.
+     */
+    void allocate(Mesh mesh, ByteBuffer vertices, int[] indices) {
+        int stride = format.getStride();
+        if (vertices.remaining() % stride != 0) {
+            throw new IllegalArgumentException("Vertex data is not a multiple of " + stride + " bytes");
+        }
+        reserve(mesh, vertices.remaining() / stride, indices.length);
+
+        GLState.bindBuffer(GL_COPY_WRITE_BUFFER, vboId);
+        glBufferSubData(GL_COPY_WRITE_BUFFER, (long) mesh.baseVertex * stride, vertices);
+        short[] shortIndices = new short[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            shortIndices[i] = (short) indices[i];
+        }
+        GLState.bindBuffer(GL_COPY_WRITE_BUFFER, eboId);
+        glBufferSubData(GL_COPY_WRITE_BUFFER, (long) mesh.firstIndex * Short.BYTES, shortIndices);
+    }
+
+    /**
+     * Like {@link #allocate(Mesh, ByteBuffer, int[])}, copying on the GPU from buffers that
+     * already hold the mesh's encoded vertices and 16-bit indices.
+     */
+    void allocate(Mesh mesh, int sourceVboId, int sourceEboId) {
+        int stride = format.getStride();
+        int vertexCount = mesh.getVertices().length / VertexFormat.SOURCE_FLOATS;
+        int indexCount = mesh.getVertexCount();
+        reserve(mesh, vertexCount, indexCount);
+
+        GLState.bindBuffer(GL_COPY_READ_BUFFER, sourceVboId);
+        GLState.bindBuffer(GL_COPY_WRITE_BUFFER, vboId);
+        glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, 0, (long) mesh.baseVertex * stride, (long) vertexCount * stride);
+        GLState.bindBuffer(GL_COPY_READ_BUFFER, sourceEboId);
+        GLState.bindBuffer(GL_COPY_WRITE_BUFFER, eboId);
+        glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, 0, (long) mesh.firstIndex * Short.BYTES, (long) indexCount * Short.BYTES);
+    }
+
+    // Allocates ranges for the mesh, growing the buffers as needed, and records them on it
+    private void reserve(Mesh mesh, int vertexCount, int indexCount) {
+        if (vaoId == 0) {
+            throw new IllegalStateException("Geometry pool was cleaned up");
+        }
+        int baseVertex = vertexRanges.allocate(vertexCount);
+        if (baseVertex < 0) {
+            grow(vboId, vertexRanges, vertexCount, format.getStride());
+            baseVertex = vertexRanges.allocate(vertexCount);
+        }
+        int firstIndex = indexRanges.allocate(indexCount);
+        if (firstIndex < 0) {
+            grow(eboId, indexRanges, indexCount, Short.BYTES);
+            firstIndex = indexRanges.allocate(indexCount);
+        }
+
+        mesh.pool = this;
+        mesh.baseVertex = baseVertex;
+        mesh.firstIndex = firstIndex;
+        mesh.poolVertexCount = vertexCount;
+        meshCount++;
+    }
+
+    /**
+     * Returns a mesh's ranges to the pool. Ignored once the pool itself is cleaned up.
+     */
+    void free(Mesh mesh) {
+        if (mesh.pool != this) {
+            return;
+        }
+        if (vaoId != 0) {
+            vertexRanges.free(mesh.baseVertex, mesh.poolVertexCount);
+            indexRanges.free(mesh.firstIndex, mesh.getVertexCount());
+            meshCount--;
+        }
+        mesh.pool = null;
+    }
+
+    // Replaces a buffer with one at least twice as large, copying the contents on the GPU
+    private void grow(int oldId, RangeAllocator ranges, int required, int elementBytes) {
+        int oldCapacity = ranges.getCapacity();
+        int newCapacity = Math.max(oldCapacity * 2, oldCapacity + required);
+        int newId = createBuffer((long) newCapacity * elementBytes, // Left bound as copy target
+            oldId == vboId ? "GeometryPool vertices" : "GeometryPool indices");
+        GLState.bindBuffer(GL_COPY_READ_BUFFER, oldId);
+        glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, 0, 0, (long) oldCapacity * elementBytes);
+        GpuResourceRegistry.release(GpuResourceRegistry.Type.BUFFER, oldId); // Earlier draws this frame may still read it
+        ranges.grow(newCapacity);
+        growCount++;
+
+        if (oldId == vboId) {
+            vboId = newId;
+        } else {
+            eboId = newId;
+        }
+        setupVertexArray();
+        instanceVboId = 0; // Rewire on the next setInstanceBuffer
+    }
+
+    public void bind() {
+        GLState.bindVertexArray(vaoId);
+    }
+
+    /**
+     * Wires an instance VBO into the pool's VAO, starting at the given instance.
+     * Multi-draw-indirect passes 0 and selects instances through baseInstance instead.
+     * @return true if the attributes were rebuilt
+     */
+    public boolean setInstanceBuffer(int instanceVboId, int firstInstance) {
+        if (this.instanceVboId == instanceVboId && this.firstInstance == firstInstance) {
+            return false;
+        }
+        GLState.bindVertexArray(vaoId);
+        GLState.bindBuffer(GL_ARRAY_BUFFER, instanceVboId);
+        Mesh.setupInstanceAttributes((long) firstInstance * Mesh.INSTANCE_FLOATS * Float.BYTES);
+        this.instanceVboId = instanceVboId;
+        this.firstInstance = firstInstance;
+        return true;
+    }
+
+    /**
+     * True if the context can merge pooled draws with glMultiDrawElementsIndirect;
+     * without it, each mesh is drawn with glDrawElementsInstancedBaseVertex.
+     */
+    public static boolean isMultiDrawIndirectSupported() {
+        GLCapabilities caps = GL.getCapabilities();
+        return caps.OpenGL43 || (caps.GL_ARB_multi_draw_indirect && caps.GL_ARB_base_instance);
+    }
+
+    public void cleanup() {
+        if (vaoId == 0) {
+            return;
+        }
+        GpuResourceRegistry.release(GpuResourceRegistry.Type.BUFFER, vboId);
+        GpuResourceRegistry.release(GpuResourceRegistry.Type.BUFFER, eboId);
+        GpuResourceRegistry.release(GpuResourceRegistry.Type.VERTEX_ARRAY, vaoId);
+        vboId = 0;
+        eboId = 0;
+        vaoId = 0;
+    }
+
+    public VertexFormat getFormat() { return format; }
+    public int getVaoId() { return vaoId; }
+    public int getVboId() { return vboId; }
+    public int getEboId() { return eboId; }
+    public int getMeshCount() { return meshCount; }
+    public int getGrowCount() { return growCount; }
+    public RangeAllocator getVertexRanges() { return vertexRanges; }
+    public RangeAllocator getIndexRanges() { return indexRanges; }
+}
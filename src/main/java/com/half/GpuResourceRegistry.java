@@ -0,0 +1,232 @@
+package com.half;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL32.*;
+
+/**
+ * GpuResourceRegistry - tracks every live GL buffer, vertex array and program of the
+ * engine, with its size in bytes, and defers their deletion.
+ *
+ * Owners {@link #register} objects when they create them and {@link #release} them
+ * instead of deleting. Releasing is safe from any thread and at any point of a frame.
+ * Once per frame, {@link #flush()} on the GL thread fences the objects released since the
+ * last flush. Each batch is deleted once its fence has passed, so no object is deleted
+ * while the GPU may still read it. {@link #shutdown()} deletes whatever is left and reports
+ * objects that were never released as leaks.
+ */
+public final class GpuResourceRegistry {
+    public enum Type { BUFFER, VERTEX_ARRAY, PROGRAM }
+
+    // A live GL object
+    private static final class Entry {
+        final Type type;
+        final int id;
+        final String label;
+        volatile long bytes;
+
+        Entry(Type type, int id, long bytes, String label) {
+            this.type = type;
+            this.id = id;
+            this.bytes = bytes;
+            this.label = label;
+        }
+    }
+
+    // Objects released before one fence
+    private static final class Batch {
+        final List<Entry> entries;
+        final long fence;
+
+        Batch(List<Entry> entries, long fence) {
+            this.entries = entries;
+            this.fence = fence;
+        }
+    }
+
+    private static final Map<Long, Entry> live = new ConcurrentHashMap<>();
+    private static final ConcurrentLinkedQueue<Entry> released = new ConcurrentLinkedQueue<>();
+    private static final ArrayDeque<Batch> retiring = new ArrayDeque<>(); // GL thread only, oldest first
+
+    // Statistics
+    private static long deletedCount;
+    private static int lastFlushDeleted;
+
+    private GpuResourceRegistry() {}
+
+    private static long key(Type type, int id) {
+        return ((long) type.ordinal() << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Records a newly created object.
+     * @param label names the owner in reports, e.g. "Mesh 12 vertices"
+     */
+    public static void register(Type type, int id, long bytes, String label) {
+        if (id == 0) {
+            return;
+        }
+        Entry previous = live.put(key(type, id), new Entry(type, id, bytes, label));
+        if (previous != null) {
+            System.err.println("Warning: " + type + " " + id + " registered twice (" + previous.label + ", " + label + ")");
+        }
+    }
+
+    /**
+     * Updates the size of a live object, e.g. after a buffer was respecified with glBufferData.
+     */
+    public static void resize(Type type, int id, long bytes) {
+        Entry entry = live.get(key(type, id));
+        if (entry != null) {
+            entry.bytes = bytes;
+        }
+    }
+
+    /**
+     * Queues an object for deletion after the GPU is done with the current frame.
+     * Unknown ids, e.g. released twice, are ignored.
+     */
+    public static void release(Type type, int id) {
+        if (id == 0) {
+            return;
+        }
+        Entry entry = live.remove(key(type, id));
+        if (entry != null) {
+            released.add(entry);
+        }
+    }
+
+    /**
+     * Deletes released objects whose fence has passed and fences the ones released since
+     * the last call. Call once per frame on the GL thread; it never waits for the GPU.
+     */
+    public static void flush() {
+        lastFlushDeleted = 0;
+        // Fences pass in submission order, so the first pending one ends the scan
+        while (!retiring.isEmpty()) {
+            Batch batch = retiring.peek();
+            int status = glClientWaitSync(batch.fence, 0, 0);
+            if (status == GL_TIMEOUT_EXPIRED) {
+                break;
+            }
+            glDeleteSync(batch.fence);
+            retiring.poll();
+            delete(batch.entries);
+        }
+
+        if (!released.isEmpty()) {
+            List<Entry> entries = new ArrayList<>();
+            Entry entry;
+            while ((entry = released.poll()) != null) {
+                entries.add(entry);
+            }
+            retiring.add(new Batch(entries, glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0)));
+        }
+    }
+
+    private static void delete(List<Entry> entries) {
+        for (Entry entry : entries) {
+            switch (entry.type) {
+                case BUFFER:
+                    GLState.deleteBuffer(entry.id);
+                    break;
+                case VERTEX_ARRAY:
+                    GLState.deleteVertexArray(entry.id);
+                    break;
+                case PROGRAM:
+                    GLState.deleteProgram(entry.id);
+                    break;
+            }
+        }
+        deletedCount += entries.size();
+        lastFlushDeleted += entries.size();
+    }
+
+    /**
+     * Waits for the GPU, deletes everything released and reports every object still
+     * registered as a leak. Call on the GL thread after all owners were cleaned up and
+     * before the context is destroyed.
+     * @return the number of leaked objects
+     */
+    public static int shutdown() {
+        glFinish();
+        while (!retiring.isEmpty()) {
+            Batch batch = retiring.poll();
+            glDeleteSync(batch.fence);
+            delete(batch.entries);
+        }
+        List<Entry> remaining = new ArrayList<>();
+        Entry entry;
+        while ((entry = released.poll()) != null) {
+            remaining.add(entry);
+        }
+        delete(remaining);
+
+        int leaks = live.size();
+        if (leaks > 0) {
+            System.err.println("GPU resource leaks: " + leaks + " objects, " + getLiveBytes() + " bytes never released");
+            for (Entry leaked : live.values()) {
+                System.err.println("  " + leaked.type + " " + leaked.id + " (" + leaked.bytes + " bytes): " + leaked.label);
+            }
+        }
+        live.clear();
+        return leaks;
+    }
+
+    public static int getLiveCount() { return live.size(); }
+
+    public static int getLiveCount(Type type) {
+        int count = 0;
+        for (Entry entry : live.values()) {
+            if (entry.type == type) count++;
+        }
+        return count;
+    }
+
+    public static long getLiveBytes() {
+        long bytes = 0;
+        for (Entry entry : live.values()) {
+            bytes += entry.bytes;
+        }
+        return bytes;
+    }
+
+    public static long getLiveBytes(Type type) {
+        long bytes = 0;
+        for (Entry entry : live.values()) {
+            if (entry.type == type) bytes += entry.bytes;
+        }
+        return bytes;
+    }
+
+    // Objects released but not yet deleted
+    public static int getPendingCount() {
+        int count = released.size();
+        for (Batch batch : retiring) {
+            count += batch.entries.size();
+        }
+        return count;
+    }
+
+    public static long getDeletedCount() { return deletedCount; }
+    public static int getLastFlushDeleted() { return lastFlushDeleted; }
+
+    /**
+     * One line per type with the live object count and bytes, for logs and overlays.
+     */
+    public static String getReport() {
+        StringBuilder report = new StringBuilder("GPU resources:");
+        for (Type type : Type.values()) {
+            report.append(String.format(" %s %d (%.1f KB)", type.name().toLowerCase(), getLiveCount(type),
+                getLiveBytes(type) / 1024.0));
+        }
+        report.append(", pending deletes ").append(getPendingCount());
+        return report.toString();
+    }
+}
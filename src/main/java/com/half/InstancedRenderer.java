@@ -0,0 +1,349 @@
+package com.half;
+
+import org.joml.Matrix4fc;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL40.*;
+import static org.lwjgl.opengl.GL43.*;
+
+/**
+ * InstancedRenderer - draws visible game objects through a {@link RenderQueue}.
+ * Every object emits a sort key from its mesh, layer and view depth; meshes get dense
+ * per-frame indices so keys never collide. After the radix sort, consecutive items
+ * sharing a mesh and layer form one instanced run, opaque instances go front to back
+ * and transparent ones back to front.
+ * All binds go through {@link GLState}, so only changes the sorted order requires reach GL.
+ *
+ * Model matrices and colors of the whole frame are uploaded to one instance VBO in
+ * queue order. Consecutive runs of meshes from the same {@link GeometryPool} are
+ * submitted as one glMultiDrawElementsIndirect call, each run being a command whose
+ * baseInstance selects its instances. Without multi-draw-indirect, or for standalone
+ * meshes, every run is its own draw with the instance attributes pointed at its slice.
+ */
+public class InstancedRenderer {
+    private static final int INITIAL_CAPACITY = 1024; // Instances
+    private static final int COMMAND_INTS = 5; // DrawElementsIndirectCommand
+
+    private final RenderQueue queue = new RenderQueue(INITIAL_CAPACITY);
+    private FloatBuffer instanceData;
+    private int instanceVboId;
+    private IntBuffer commandData;
+    private int indirectBufferId;
+    private boolean instancingEnabled = true;
+    private boolean multiDrawIndirectEnabled;
+    private float alpha = 1.0f; // Interpolation factor of the current render() call
+    private int queueStamp; // Identifies the current queue to Mesh.queueStamp
+    private int meshIndexCount; // Dense mesh indices handed out for the current queue
+    private final float[] matrixScratch = new float[16];
+
+    // Layer state of the current render() call
+    private int currentLayer;
+    private boolean blendWasEnabled;
+
+    // Runs of the current render() call: instances [runStart[i], runStart[i + 1])
+    private int runCount;
+    private int[] runStart = new int[64];
+    private int[] runLayer = new int[64];
+    private int[] runCommand = new int[64]; // Indirect command index, -1 if drawn directly
+    private Mesh[] runMesh = new Mesh[64];
+
+    // Per-frame statistics
+    private int drawCalls;
+    private int instancesDrawn;
+
+    public InstancedRenderer() {
+        instanceVboId = glGenBuffers();
+        if (instanceVboId == 0) {
+            throw new RuntimeException("Failed to create instance VBO");
+        }
+        GpuResourceRegistry.register(GpuResourceRegistry.Type.BUFFER, instanceVboId, 0, "InstancedRenderer instances");
+        instanceData = MemoryUtil.memAllocFloat(INITIAL_CAPACITY * Mesh.INSTANCE_FLOATS);
+
+        multiDrawIndirectEnabled = GeometryPool.isMultiDrawIndirectSupported();
+        if (multiDrawIndirectEnabled) {
+            indirectBufferId = glGenBuffers();
+            if (indirectBufferId == 0) {
+                throw new RuntimeException("Failed to create indirect buffer");
+            }
+            GpuResourceRegistry.register(GpuResourceRegistry.Type.BUFFER, indirectBufferId, 0, "InstancedRenderer commands");
+            commandData = MemoryUtil.memAllocInt(64 * COMMAND_INTS);
+        }
+    }
+
+    /**
+     * Draws all visible objects at the current tick. The shader must already be bound.
+     */
+    public void render(List<GameObject> gameObjects, Matrix4fc viewMatrix) {
+        render(gameObjects, viewMatrix, 1.0f);
+    }
+
+    /**
+     * Draws all visible objects with their world matrices blended between the previous
+     * and the current tick. The shader must already be bound.
+     * @param viewMatrix camera view matrix, used for depth sorting
+     * @param alpha interpolation factor, 0 = previous tick, 1 = current tick
+     */
+    public void render(List<GameObject> gameObjects, Matrix4fc viewMatrix, float alpha) {
+        this.alpha = alpha;
+        drawCalls = 0;
+        instancesDrawn = 0;
+
+        buildQueue(gameObjects, viewMatrix);
+        queue.sort();
+        buildRuns(gameObjects);
+        if (runCount == 0) {
+            return;
+        }
+        upload(gameObjects);
+
+        currentLayer = RenderQueue.LAYER_OPAQUE;
+        int run = 0;
+        while (run < runCount) {
+            setLayer(runLayer[run]);
+            Mesh mesh = runMesh[run];
+            if (runCommand[run] >= 0) {
+                // Merge the following runs of the same pool and layer into one call
+                GeometryPool pool = mesh.getPool();
+                int end = run + 1;
+                while (end < runCount && runCommand[end] >= 0
+                        && runMesh[end].getPool() == pool && runLayer[end] == runLayer[run]) {
+                    end++;
+                }
+                pool.setInstanceBuffer(instanceVboId, 0);
+                pool.bind();
+                GLState.bindBuffer(GL_DRAW_INDIRECT_BUFFER, indirectBufferId);
+                glMultiDrawElementsIndirect(GL_TRIANGLES, GeometryPool.INDEX_TYPE,
+                    (long) runCommand[run] * COMMAND_INTS * Integer.BYTES, end - run, 0);
+                run = end;
+            } else {
+                mesh.setInstanceBuffer(instanceVboId, runStart[run]);
+                mesh.bind();
+                mesh.drawInstanced(runStart[run + 1] - runStart[run]);
+                run++;
+            }
+            drawCalls++;
+        }
+        instancesDrawn = queue.size();
+
+        setLayer(RenderQueue.LAYER_OPAQUE);
+    }
+
+    private void buildQueue(List<GameObject> gameObjects, Matrix4fc view) {
+        queue.clear();
+        queueStamp++;
+        meshIndexCount = 0;
+        // Only the view-space z row is needed for depth
+        float vx = view.m02(), vy = view.m12(), vz = view.m22(), vw = view.m32();
+
+        for (int i = 0, n = gameObjects.size(); i < n; i++) {
+            GameObject obj = gameObjects.get(i);
+            Mesh mesh = obj.getRenderMesh();
+            if (mesh == null || !obj.isVisible()) continue; // Also skips meshes still loading
+            if (!mesh.restore()) continue; // Evicted meshes come back when seen again
+
+            Transform transform = obj.getTransform();
+            TransformStore store = transform.getStore();
+            int slot = transform.getSlot();
+            int m = slot * 16;
+            float depth = -(vx * store.world[m + 12] + vy * store.world[m + 13] + vz * store.world[m + 14] + vw);
+
+            if (mesh.queueStamp != queueStamp) {
+                mesh.queueStamp = queueStamp;
+                mesh.queueIndex = meshIndexCount++;
+            }
+            // Every item shares the one bound shader, so its index is always 0
+            long key = store.color[slot * 4 + 3] < 1.0f
+                ? RenderQueue.transparentKey(0, mesh.queueIndex, depth)
+                : RenderQueue.opaqueKey(0, mesh.queueIndex, depth);
+            queue.add(key, i);
+        }
+    }
+
+    // Switches blending and depth writes when moving between the opaque and transparent layers
+    private void setLayer(int layer) {
+        if (layer == currentLayer) {
+            return;
+        }
+        if (layer == RenderQueue.LAYER_TRANSPARENT) {
+            blendWasEnabled = GLState.isEnabled(GL_BLEND);
+            GLState.enable(GL_BLEND);
+            GLState.blendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+            GLState.depthMask(false);
+        } else {
+            GLState.depthMask(true);
+            GLState.setEnabled(GL_BLEND, blendWasEnabled);
+        }
+        currentLayer = layer;
+    }
+
+    // Splits the sorted queue into runs of equal state key and assigns indirect commands
+    private void buildRuns(List<GameObject> gameObjects) {
+        runCount = 0;
+        int commands = 0;
+        int count = queue.size();
+        int start = 0;
+        while (start < count) {
+            long stateKey = RenderQueue.getStateKey(queue.getKey(start));
+            Mesh mesh = gameObjects.get(queue.getItem(start)).getRenderMesh();
+            int end = start + 1;
+            if (instancingEnabled) {
+                // The mesh check only matters past RenderQueue.MAX_MESHES, where indices wrap
+                while (end < count && RenderQueue.getStateKey(queue.getKey(end)) == stateKey
+                        && gameObjects.get(queue.getItem(end)).getRenderMesh() == mesh) {
+                    end++;
+                }
+            }
+            ensureRunCapacity(runCount + 2);
+            runStart[runCount] = start;
+            runLayer[runCount] = RenderQueue.getLayer(stateKey);
+            runMesh[runCount] = mesh;
+            MeshBudget.markUsed(mesh);
+            runCommand[runCount] = multiDrawIndirectEnabled && mesh.getPool() != null ? commands++ : -1;
+            runCount++;
+            start = end;
+        }
+        runStart[runCount] = count;
+    }
+
+    // Uploads the instance data of all runs and their indirect commands
+    private void upload(List<GameObject> gameObjects) {
+        ensureCapacity(queue.size());
+        for (int run = 0; run < runCount; run++) {
+            // Quantized positions need the mesh's bounding box folded into the model matrix
+            Mesh mesh = runMesh[run];
+            float[] box = mesh.getFormat().hasQuantizedPositions() ? mesh.getBounds() : null;
+
+            for (int i = runStart[run], end = runStart[run + 1]; i < end; i++) {
+                Transform transform = gameObjects.get(queue.getItem(i)).getTransform();
+                TransformStore store = transform.getStore();
+                int slot = transform.getSlot();
+
+                // Scene.render has already propagated world matrices, so they are copied as-is
+                // unless the frame falls between two ticks
+                boolean snap = alpha >= 1.0f || (store.flags[slot] & TransformStore.FLAG_SNAP) != 0;
+                if (box != null) {
+                    putDequantized(store, slot, snap, box);
+                } else if (snap) {
+                    instanceData.put(store.world, slot * 16, 16);
+                } else {
+                    putLerp(store.prevWorld, store.world, slot * 16, 16);
+                }
+                instanceData.put(store.color, slot * 4, 4);
+                if (snap) {
+                    instanceData.put(store.worldNormal, slot * 9, 9);
+                } else {
+                    putLerp(store.prevWorldNormal, store.worldNormal, slot * 9, 9);
+                }
+            }
+        }
+        instanceData.flip();
+
+        // Re-specifying the whole store lets the driver orphan the previous contents
+        GLState.bindBuffer(GL_ARRAY_BUFFER, instanceVboId);
+        glBufferData(GL_ARRAY_BUFFER, instanceData, GL_STREAM_DRAW);
+        GpuResourceRegistry.resize(GpuResourceRegistry.Type.BUFFER, instanceVboId, instanceData.remaining() * (long) Float.BYTES);
+        instanceData.clear();
+
+        if (!multiDrawIndirectEnabled) {
+            return;
+        }
+        for (int run = 0; run < runCount; run++) {
+            if (runCommand[run] < 0) continue;
+            if (commandData.remaining() < COMMAND_INTS) {
+                commandData = MemoryUtil.memRealloc(commandData, commandData.capacity() * 2);
+            }
+            Mesh mesh = runMesh[run];
+            commandData.put(mesh.getVertexCount())
+                       .put(runStart[run + 1] - runStart[run])
+                       .put(mesh.getFirstIndex())
+                       .put(mesh.getBaseVertex())
+                       .put(runStart[run]); // baseInstance
+        }
+        if (commandData.position() > 0) {
+            commandData.flip();
+            GLState.bindBuffer(GL_DRAW_INDIRECT_BUFFER, indirectBufferId);
+            glBufferData(GL_DRAW_INDIRECT_BUFFER, commandData, GL_STREAM_DRAW);
+            GpuResourceRegistry.resize(GpuResourceRegistry.Type.BUFFER, indirectBufferId, commandData.remaining() * (long) Integer.BYTES);
+        }
+        commandData.clear();
+    }
+
+    private void putDequantized(TransformStore store, int slot, boolean snap, float[] box) {
+        int offset = slot * 16;
+        for (int i = 0; i < 16; i++) {
+            float to = store.world[offset + i];
+            matrixScratch[i] = snap ? to : store.prevWorld[offset + i] + (to - store.prevWorld[offset + i]) * alpha;
+        }
+        VertexFormat.dequantization(matrixScratch, box);
+        instanceData.put(matrixScratch);
+    }
+
+    // Component-wise blend; fine for the small rotations of a single tick
+    private void putLerp(float[] from, float[] to, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            instanceData.put(from[i] + (to[i] - from[i]) * alpha);
+        }
+    }
+
+    private void ensureRunCapacity(int runs) {
+        if (runStart.length < runs) {
+            int capacity = Math.max(runs, runStart.length * 2);
+            runStart = Arrays.copyOf(runStart, capacity);
+            runLayer = Arrays.copyOf(runLayer, capacity);
+            runCommand = Arrays.copyOf(runCommand, capacity);
+            runMesh = Arrays.copyOf(runMesh, capacity);
+        }
+    }
+
+    private void ensureCapacity(int instances) {
+        int required = instances * Mesh.INSTANCE_FLOATS;
+        if (instanceData.capacity() < required) {
+            instanceData = MemoryUtil.memRealloc(instanceData, Math.max(required, instanceData.capacity() * 2));
+        }
+    }
+
+    public void cleanup() {
+        queue.clear();
+        Arrays.fill(runMesh, null);
+        if (indirectBufferId != 0) {
+            GpuResourceRegistry.release(GpuResourceRegistry.Type.BUFFER, indirectBufferId);
+            indirectBufferId = 0;
+        }
+        if (commandData != null) {
+            MemoryUtil.memFree(commandData);
+            commandData = null;
+        }
+        if (instanceVboId != 0) {
+            GpuResourceRegistry.release(GpuResourceRegistry.Type.BUFFER, instanceVboId);
+            instanceVboId = 0;
+        }
+        if (instanceData != null) {
+            MemoryUtil.memFree(instanceData);
+            instanceData = null;
+        }
+    }
+
+    public boolean isInstancingEnabled() { return instancingEnabled; }
+    public void setInstancingEnabled(boolean instancingEnabled) { this.instancingEnabled = instancingEnabled; }
+
+    public boolean isMultiDrawIndirectEnabled() { return multiDrawIndirectEnabled; }
+
+    /**
+     * Allows turning multi-draw-indirect off to exercise the per-run fallback.
+     * It cannot be turned on if the context does not support it.
+     */
+    public void setMultiDrawIndirectEnabled(boolean enabled) {
+        this.multiDrawIndirectEnabled = enabled && indirectBufferId != 0;
+    }
+
+    public int getDrawCalls() { return drawCalls; }
+    public int getInstancesDrawn() { return instancesDrawn; }
+}
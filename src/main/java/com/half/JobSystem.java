@@ -0,0 +1,148 @@
+package com.half;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * JobSystem - runs data-parallel loops on a work-stealing ForkJoinPool.
+ * A range is split recursively into chunks of at most grain elements; idle workers
+ * steal halves from busy ones, so uneven chunks balance out on their own.
+ *
+ * Code running inside a job must not touch shared state directly. It hands such work
+ * to {@link #defer(Runnable)}, which records it in the command buffer of the current
+ * worker thread. All buffers are flushed on the calling thread once the loop finishes.
+ * Outside a job, defer runs the command immediately.
+ */
+public class JobSystem {
+    // Buffer of the job running on the current thread, null outside jobs
+    private static final ThreadLocal<List<Runnable>> currentBuffer = new ThreadLocal<>();
+
+    private final ForkJoinPool pool;
+    private final ThreadLocal<List<Runnable>> threadBuffers;
+    private final List<List<Runnable>> allBuffers = new ArrayList<>();
+
+    /**
+     * Functional interface for the body of a parallel loop over [from, to).
+     */
+    public interface RangeJob {
+        void run(int from, int to);
+    }
+
+    // Uses the common pool, shared with the parallel passes of TransformStore and Frustum
+    public JobSystem() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public JobSystem(ForkJoinPool pool) {
+        this.pool = pool;
+        this.threadBuffers = ThreadLocal.withInitial(() -> {
+            List<Runnable> buffer = new ArrayList<>();
+            synchronized (allBuffers) {
+                allBuffers.add(buffer);
+            }
+            return buffer;
+        });
+    }
+
+    /**
+     * Runs job over [0, count) in chunks of at most grain elements and then
+     * executes all deferred commands on the calling thread.
+     * Small ranges, or a pool without spare workers, run inline on the caller.
+     */
+    public void parallelFor(int count, int grain, RangeJob job) {
+        if (grain < 1) {
+            throw new IllegalArgumentException("Grain must be positive: " + grain);
+        }
+        try {
+            if (count <= grain || pool.getParallelism() < 2) {
+                runChunk(job, 0, count);
+            } else {
+                pool.invoke(new RangeTask(job, 0, count, grain));
+            }
+        } finally {
+            flush();
+        }
+    }
+
+    private void runChunk(RangeJob job, int from, int to) {
+        List<Runnable> previous = currentBuffer.get();
+        currentBuffer.set(threadBuffers.get());
+        try {
+            job.run(from, to);
+        } finally {
+            currentBuffer.set(previous);
+        }
+    }
+
+    // Runs deferred commands buffer by buffer; a failing command does not drop the rest
+    private void flush() {
+        RuntimeException failure = null;
+        List<List<Runnable>> buffers;
+        synchronized (allBuffers) {
+            // Snapshot, as a command may start another loop that registers a new buffer
+            buffers = new ArrayList<>(allBuffers);
+        }
+        for (List<Runnable> buffer : buffers) {
+            for (int i = 0; i < buffer.size(); i++) {
+                try {
+                    buffer.get(i).run();
+                } catch (RuntimeException e) {
+                    if (failure == null) failure = e;
+                }
+            }
+            buffer.clear();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Defers a command touching shared state until the current parallel loop has finished.
+     * Runs it right away when called outside a job.
+     */
+    public static void defer(Runnable command) {
+        List<Runnable> buffer = currentBuffer.get();
+        if (buffer == null) {
+            command.run();
+        } else {
+            buffer.add(command);
+        }
+    }
+
+    // True while the current thread is executing a job
+    public static boolean inJob() {
+        return currentBuffer.get() != null;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    @SuppressWarnings("serial") // Never serialized
+    private class RangeTask extends RecursiveAction {
+        private final RangeJob job;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        RangeTask(RangeJob job, int from, int to, int grain) {
+            this.job = job;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                runChunk(job, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(job, from, mid, grain), new RangeTask(job, mid, to, grain));
+        }
+    }
+}
@@ -4,10 +4,11 @@ import org.lwjgl.glfw.GLFW;
 import org.lwjgl.glfw.GLFWErrorCallback;
 import org.lwjgl.glfw.GLFWVidMode;
 import org.lwjgl.opengl.GL;
-import org.lwjgl.opengl.GL11;
 import org.lwjgl.system.MemoryStack;
 
 import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -23,8 +24,12 @@ public class Main {
     private static final int INITIAL_WIDTH = 1280;
     private static final int INITIAL_HEIGHT = 720;
     private static final String WINDOW_TITLE = "3D Scene with Colorful Objects";
-    private static final int MAX_OBJECTS = 100;
+    private static final int MAX_OBJECTS = 50000;
+    private static final int SPAWN_BATCH = 1000; // Objects created per press of B
     private static final float MOUSE_SENSITIVITY = 0.05f;
+    private static final double DEFAULT_TICK_RATE = 60.0; // Simulation ticks per second
+    private static final int MAX_SUBSTEPS = 5; // Ticks per frame before the backlog is dropped
+    private static final Path SHADER_CACHE_DIR = Paths.get(System.getProperty("user.home"), ".gameengine", "shader-cache");
 
     // Window and graphics
     private long window;
@@ -32,6 +37,7 @@ public class Main {
     private int height = INITIAL_HEIGHT;
     private Scene scene;
     private Camera camera;
+    private CubeBatchRenderer cubeRenderer;
 
     // Input handling
     private double lastX, lastY;
@@ -40,9 +46,14 @@ public class Main {
 
     // Timing
     private double lastTime = 0.0;
-    private double deltaTime = 0.0;
-    private int frameCount = 0;
-    private double lastFpsTime = 0.0;
+    private double deltaTime = 0.0; // Real frame time, used for camera input
+    private double tickRate = DEFAULT_TICK_RATE;
+    private double fixedDeltaTime = 1.0 / DEFAULT_TICK_RATE;
+    private double accumulator = 0.0;
+    private int tickCount = 0;
+    private int droppedTicks = 0;
+    private double lastReportTime = 0.0;
+    private final PerformanceMonitor monitor = new PerformanceMonitor();
 
     // State
     private boolean running = true;
@@ -115,15 +126,24 @@ public class Main {
         GL.createCapabilities();
 
         // Set OpenGL state
+        GLState.reset(); // New context
         glClearColor(0.05f, 0.05f, 0.15f, 1.0f); // Dark blue background
-        glEnable(GL_DEPTH_TEST);
-        glEnable(GL_CULL_FACE);
-        glCullFace(GL_BACK);
-        glEnable(GL_BLEND);
-        glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+        GLState.enable(GL_DEPTH_TEST);
+        GLState.enable(GL_CULL_FACE);
+        GLState.cullFace(GL_BACK);
+        GLState.enable(GL_BLEND);
+        GLState.blendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+
+        // Linked programs are cached on disk, so later launches skip GLSL compilation
+        if (ProgramBinaryCache.isSupported()) {
+            Shader.setBinaryCache(new ProgramBinaryCache(SHADER_CACHE_DIR));
+        }
 
         // Initialize scene and camera
+        long setupStart = System.nanoTime();
         initializeScene();
+        cubeRenderer = new CubeBatchRenderer(MAX_OBJECTS);
+        printShaderStartup(System.nanoTime() - setupStart);
 
         // Create initial objects
         createInitialObjects();
@@ -133,7 +153,7 @@ public class Main {
 
         // Initialize timing
         lastTime = glfwGetTime();
-        lastFpsTime = lastTime;
+        lastReportTime = lastTime;
     }
 
     private void setupInputCallbacks() {
@@ -256,22 +276,47 @@ public class Main {
                 double currentTime = glfwGetTime();
                 deltaTime = currentTime - lastTime;
                 lastTime = currentTime;
+                monitor.beginFrame();
 
-                // Update FPS counter
-                updateFpsCounter(currentTime);
+                // Report frame timing once a second
+                updateReport(currentTime);
 
                 // Handle input
+                monitor.begin(PerformanceMonitor.Phase.INPUT);
                 handleInput();
+                monitor.end(PerformanceMonitor.Phase.INPUT);
+
+                // Run the simulation in fixed ticks, decoupled from the frame rate
+                accumulator += deltaTime;
+                int steps = 0;
+                monitor.begin(PerformanceMonitor.Phase.UPDATE);
+                while (accumulator >= fixedDeltaTime && steps < MAX_SUBSTEPS) {
+                    update((float) fixedDeltaTime);
+                    accumulator -= fixedDeltaTime;
+                    steps++;
+                }
+                monitor.end(PerformanceMonitor.Phase.UPDATE);
+                if (accumulator >= fixedDeltaTime) {
+                    // Too far behind (a long hitch or a tick slower than real time):
+                    // drop the backlog instead of spiraling into ever more ticks per frame
+                    droppedTicks += (int) (accumulator / fixedDeltaTime);
+                    accumulator %= fixedDeltaTime;
+                }
+                tickCount += steps;
 
-                // Update scene
-                update((float) deltaTime);
-
-                // Render
-                render();
+                // Render between the last two ticks
+                monitor.begin(PerformanceMonitor.Phase.RENDER_SUBMIT);
+                render((float) (accumulator / fixedDeltaTime));
+                GpuResourceRegistry.flush(); // Deletes GL objects the GPU is done with
+                monitor.end(PerformanceMonitor.Phase.RENDER_SUBMIT);
 
-                // Swap buffers and poll events
+                // Swap buffers and poll events; the swap is where the CPU waits for the GPU
+                monitor.begin(PerformanceMonitor.Phase.SWAP);
                 glfwSwapBuffers(window);
+                monitor.end(PerformanceMonitor.Phase.SWAP);
+                monitor.begin(PerformanceMonitor.Phase.INPUT);
                 glfwPollEvents();
+                monitor.end(PerformanceMonitor.Phase.INPUT);
 
             } catch (Exception e) {
                 System.err.println("Error in game loop:");
@@ -281,12 +326,17 @@ public class Main {
         }
     }
 
-    private void updateFpsCounter(double currentTime) {
-        frameCount++;
-        if (currentTime - lastFpsTime >= 1.0) {
-            System.out.println("FPS: " + frameCount + " | Objects: " + objects.size());
-            frameCount = 0;
-            lastFpsTime = currentTime;
+    private void updateReport(double currentTime) {
+        if (currentTime - lastReportTime >= 1.0) {
+            System.out.println(monitor.getReport());
+            System.out.println("Ticks: " + tickCount +
+                    (droppedTicks > 0 ? " (dropped " + droppedTicks + ")" : "") + " | Objects: " + objects.size());
+            System.out.println(GpuResourceRegistry.getReport());
+            System.out.println(MeshCache.getReport());
+            monitor.resetHistograms(); // Percentiles per report interval
+            tickCount = 0;
+            droppedTicks = 0;
+            lastReportTime = currentTime;
         }
     }
 
@@ -315,6 +365,14 @@ public class Main {
             objectSpawnCooldown = SPAWN_COOLDOWN_TIME;
         }
 
+        // Spawn a batch of objects
+        if (keys[GLFW_KEY_B] && objectSpawnCooldown <= 0) {
+            for (int i = 0; i < SPAWN_BATCH; i++) {
+                createRandomObject();
+            }
+            objectSpawnCooldown = SPAWN_COOLDOWN_TIME;
+        }
+
         // Clear objects
         if (keys[GLFW_KEY_X]) {
             clearObjects();
@@ -357,57 +415,33 @@ public class Main {
         }
     }
 
-    private void render() {
+    /**
+     * Sets the simulation rate. Rendering is unaffected and interpolates between ticks.
+     */
+    public void setTickRate(double ticksPerSecond) {
+        if (ticksPerSecond <= 0) {
+            throw new IllegalArgumentException("Tick rate must be positive: " + ticksPerSecond);
+        }
+        tickRate = ticksPerSecond;
+        fixedDeltaTime = 1.0 / ticksPerSecond;
+    }
+
+    public double getTickRate() { return tickRate; }
+
+    private void render(float alpha) {
         // Clear screen
         glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
 
-        // Set up 3D projection if camera is available
-        if (camera != null) {
-            // Set up projection matrix
-            glMatrixMode(GL_PROJECTION);
-            glLoadIdentity();
-
-            float fov = camera.getFov();
-            float aspect = (float) width / height;
-            float nearPlane = 0.1f;
-            float farPlane = 1000.0f;
-
-            // Simple perspective projection
-            float top = (float) (nearPlane * Math.tan(Math.toRadians(fov / 2.0)));
-            float bottom = -top;
-            float right = top * aspect;
-            float left = -right;
-
-            glFrustum(left, right, bottom, top, nearPlane, farPlane);
-
-            // Set up model-view matrix
-            glMatrixMode(GL_MODELVIEW);
-            glLoadIdentity();
-
-            // Apply camera transformation
-            org.joml.Vector3f pos = camera.getPosition();
-            org.joml.Vector3f front = camera.getFront();
-            org.joml.Vector3f up = camera.getUp();
-
-            // Look at target
-            float targetX = pos.x + front.x;
-            float targetY = pos.y + front.y;
-            float targetZ = pos.z + front.z;
-
-            gluLookAt(pos.x, pos.y, pos.z, targetX, targetY, targetZ, up.x, up.y, up.z);
+        if (camera == null || cubeRenderer == null) {
+            return;
         }
 
-        // Render objects
-        renderObjects();
-    }
-
-    private void renderObjects() {
-        // Simple object rendering
-        for (ColorfulObject obj : objects) {
-            if (obj != null) {
-                obj.render();
-            }
+        // All cubes go into one streaming buffer and are drawn together
+        cubeRenderer.begin();
+        for (int i = 0, n = objects.size(); i < n; i++) {
+            objects.get(i).render(alpha, cubeRenderer);
         }
+        cubeRenderer.end(camera.getProjectionMatrix(), camera.getViewMatrix());
     }
 
     private void clearObjects() {
@@ -422,12 +456,24 @@ public class Main {
         System.out.println("LEFT SHIFT: Move down");
         System.out.println("MOUSE: Look around");
         System.out.println("C: Create new object");
+        System.out.println("B: Create " + SPAWN_BATCH + " objects");
         System.out.println("X: Clear all objects");
         System.out.println("TAB: Toggle cursor mode");
         System.out.println("ESC: Exit");
         System.out.println("================\n");
     }
 
+    // Cold: programs were compiled from source; warm: all came from the binary cache
+    private void printShaderStartup(long setupNanos) {
+        ProgramBinaryCache cache = Shader.getBinaryCache();
+        if (cache == null) {
+            System.out.printf("Scene setup: %.1f ms (program binaries not supported, shaders compiled)%n", setupNanos / 1e6);
+            return;
+        }
+        System.out.printf("Scene setup: %.1f ms, %s start (%d programs loaded from cache, %d compiled)%n",
+            setupNanos / 1e6, cache.getMisses() == 0 ? "warm" : "cold", cache.getHits(), cache.getMisses());
+    }
+
     private void cleanup() {
         running = false;
 
@@ -440,6 +486,16 @@ public class Main {
             }
             objects.clear();
 
+            if (cubeRenderer != null) {
+                cubeRenderer.cleanup();
+                cubeRenderer = null;
+            }
+
+            // Everything is released by now; whatever is still registered leaked
+            if (window != 0) {
+                GpuResourceRegistry.shutdown();
+            }
+
             // Clean up GLFW
             if (window != 0) {
                 glfwFreeCallbacks(window);
@@ -459,53 +515,6 @@ public class Main {
         }
     }
 
-    // GLU LookAt implementation since it might not be available
-    private void gluLookAt(float eyeX, float eyeY, float eyeZ,
-                           float centerX, float centerY, float centerZ,
-                           float upX, float upY, float upZ) {
-        // Forward vector
-        float fx = centerX - eyeX;
-        float fy = centerY - eyeY;
-        float fz = centerZ - eyeZ;
-
-        // Normalize forward
-        float flen = (float) Math.sqrt(fx*fx + fy*fy + fz*fz);
-        if (flen != 0) {
-            fx /= flen;
-            fy /= flen;
-            fz /= flen;
-        }
-
-        // Right vector (forward cross up)
-        float rx = fy * upZ - fz * upY;
-        float ry = fz * upX - fx * upZ;
-        float rz = fx * upY - fy * upX;
-
-        // Normalize right
-        float rlen = (float) Math.sqrt(rx*rx + ry*ry + rz*rz);
-        if (rlen != 0) {
-            rx /= rlen;
-            ry /= rlen;
-            rz /= rlen;
-        }
-
-        // Up vector (right cross forward)
-        float ux = ry * fz - rz * fy;
-        float uy = rz * fx - rx * fz;
-        float uz = rx * fy - ry * fx;
-
-        // Create transformation matrix
-        float[] m = {
-                rx, ux, -fx, 0,
-                ry, uy, -fy, 0,
-                rz, uz, -fz, 0,
-                0, 0, 0, 1
-        };
-
-        glMultMatrixf(m);
-        glTranslatef(-eyeX, -eyeY, -eyeZ);
-    }
-
     // Simple colorful object class
     private static class ColorfulObject {
         private String name;
@@ -513,6 +522,7 @@ public class Main {
         private float r, g, b;
         private float rotationSpeed;
         private float rotation = 0;
+        private float prevY, prevRotation; // State of the previous tick, for interpolation
         private float time = 0;
         private float bobOffset;
 
@@ -528,9 +538,12 @@ public class Main {
             this.b = b;
             this.rotationSpeed = rotSpeed;
             this.bobOffset = (float) (Math.random() * Math.PI * 2); // Random phase for bobbing
+            this.prevY = y;
         }
 
         public void update(float deltaTime) {
+            prevY = y;
+            prevRotation = rotation;
             rotation += rotationSpeed * deltaTime * 50; // degrees
             time += deltaTime;
 
@@ -547,59 +560,9 @@ public class Main {
             y += (float)(Math.sin(time * 2 + bobOffset) * 0.01);
         }
 
-        public void render() {
-            glPushMatrix();
-            glTranslatef(x, y, z);
-            glRotatef(rotation, 1, 1, 0.5f);
-            glColor3f(r, g, b);
-
-            // Draw a colorful cube with gradient faces
-            glBegin(GL_QUADS);
-
-            // Front face (brighter)
-            glColor3f(r * 1.2f, g * 1.2f, b * 1.2f);
-            glVertex3f(-size, -size, size);
-            glVertex3f(size, -size, size);
-            glVertex3f(size, size, size);
-            glVertex3f(-size, size, size);
-
-            // Back face (darker)
-            glColor3f(r * 0.6f, g * 0.6f, b * 0.6f);
-            glVertex3f(-size, -size, -size);
-            glVertex3f(-size, size, -size);
-            glVertex3f(size, size, -size);
-            glVertex3f(size, -size, -size);
-
-            // Top face
-            glColor3f(r * 1.0f, g * 1.0f, b * 1.0f);
-            glVertex3f(-size, size, -size);
-            glVertex3f(-size, size, size);
-            glVertex3f(size, size, size);
-            glVertex3f(size, size, -size);
-
-            // Bottom face
-            glColor3f(r * 0.8f, g * 0.8f, b * 0.8f);
-            glVertex3f(-size, -size, -size);
-            glVertex3f(size, -size, -size);
-            glVertex3f(size, -size, size);
-            glVertex3f(-size, -size, size);
-
-            // Right face
-            glColor3f(r * 0.9f, g * 0.9f, b * 0.9f);
-            glVertex3f(size, -size, -size);
-            glVertex3f(size, size, -size);
-            glVertex3f(size, size, size);
-            glVertex3f(size, -size, size);
-
-            // Left face
-            glColor3f(r * 0.7f, g * 0.7f, b * 0.7f);
-            glVertex3f(-size, -size, -size);
-            glVertex3f(-size, -size, size);
-            glVertex3f(-size, size, size);
-            glVertex3f(-size, size, -size);
-
-            glEnd();
-            glPopMatrix();
+        public void render(float alpha, CubeBatchRenderer renderer) {
+            renderer.add(x, prevY + (y - prevY) * alpha, z, size, r, g, b,
+                    prevRotation + (rotation - prevRotation) * alpha);
         }
 
         public void cleanup() {
@@ -2,31 +2,151 @@ package com.half;
 
 import org.joml.Vector4f;
 import org.lwjgl.system.MemoryUtil;
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Supplier;
 
 import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.opengl.GL15.*;
 import static org.lwjgl.opengl.GL20.*;
 import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.opengl.GL32.*;
+import static org.lwjgl.opengl.GL33.*;
 
 /**
  * Mesh class that handles VAO/VBO management for rendering 3D objects.
  * Implements Renderable and AutoCloseable interfaces for resource management.
+ * While a {@link GeometryPool} is set with {@link #setGeometryPool(GeometryPool)}, new
+ * meshes sub-allocate from it instead of creating their own VAO/VBO/EBO.
+ * Vertices are given as 6 floats (position, normal) and stored in a {@link VertexFormat}.
+ * Triangles and vertices are reordered by {@link MeshOptimizer} on creation, and indices
+ * are stored as 16 bits whenever the vertex count allows.
+ * A mesh can carry a chain of coarser levels of detail, from {@link #buildLodChain} or
+ * {@link #setLodChain}; {@link #selectLod} picks one from the projected size on screen.
+ * Under a {@link MeshBudget}, a mesh can be evicted from GPU memory and is re-uploaded from
+ * its CPU copy, or regenerated from its source, the next time it is drawn.
  */
 public class Mesh implements Renderable, AutoCloseable {
+    /**
+     * What stays on the Java heap after upload. KEEP holds the final vertices and indices,
+     * so an evicted mesh re-uploads without regenerating; DISCARD drops them, leaving the
+     * mesh evictable only if it has a source.
+     */
+    public enum Retention { KEEP, DISCARD }
+
+    // Per-instance attribute layout: mat4 model matrix (locations 2-5), vec4 color (location 6)
+    // and mat3 normal matrix (locations 7-9)
+    public static final int INSTANCE_MODEL_LOCATION = 2;
+    public static final int INSTANCE_COLOR_LOCATION = 6;
+    public static final int INSTANCE_NORMAL_LOCATION = 7;
+    public static final int INSTANCE_FLOATS = 16 + 4 + 9;
+
     protected int vaoId;
     protected int vboId;
     protected int eboId;
     protected int vertexCount;
     protected float[] vertices;
+    private final VertexFormat format;
+    private final float[] bounds = new float[6]; // Center and half extents of the positions
+    private int indexType = GL_UNSIGNED_INT;
+    private float acmrBefore; // Average cache misses per triangle, before and after optimizing
+    private float acmrAfter;
     private boolean initialized = false;
+    private int instanceVboId = 0; // Instance buffer currently wired into this VAO
+    private int firstInstance = 0;
+    private final int meshId = nextMeshId++; // Identifies the mesh in render sort keys
+
+    // Coarser levels of detail; level 0 is this mesh, level i + 1 is lodLevels[i]
+    private Mesh[] lodLevels = new Mesh[0];
+    // Projected size in pixels below which level i gives way to level i + 1
+    private float[] lodScreenSizes = new float[0];
+
+    // Pool the next meshes are allocated from, null for standalone meshes
+    private static GeometryPool geometryPool;
+    private static int nextMeshId = 1;
+
+    // Triangle-weighted ACMR over every mesh optimized so far, cached or not
+    private static long optimizedMeshes;
+    private static long optimizedTriangles;
+    private static double acmrBeforeSum;
+    private static double acmrAfterSum;
+
+    public static final float DEFAULT_LOD_SCREEN_SIZE = 256.0f; // Pixels at which level 0 gives way to level 1
+    public static final float LOD_HYSTERESIS = 0.15f; // Fraction a size must pass a threshold by to switch
+    private static final float LOD_MAX_ERROR = 0.05f; // Of the bounding box diagonal
+
+    // Location within the pool, set by GeometryPool.allocate
+    GeometryPool pool;
+    int baseVertex;
+    int firstIndex;
+    int poolVertexCount;
+    private int refCount = 1; // The creator holds the first reference
+    Object cacheKey; // Set by MeshCache for shared meshes
     private final Vector4f color = new Vector4f(1.0f, 1.0f, 1.0f, 1.0f); // Default white color
     
     // Track if this mesh has been closed
     private volatile boolean closed = false;
 
+    // Set while MeshLoader prepares the mesh; cleared when it becomes resident or is cleaned up
+    boolean loading;
+    int[] preparedIndices; // Handed from prepare() to the upload
+
+    // Residency under the memory budget
+    private Retention retention = defaultRetention;
+    private int[] indices; // Final indices, kept with the vertices under Retention.KEEP
+    private Supplier<MeshLoader.Geometry> source; // Regenerates the mesh after eviction
+    private boolean evicted;
+    private long gpuBytes; // Vertex and index bytes while resident
+    int lastUsedFrame = -1; // Set by MeshBudget.markUsed
+    // Dense sort key index handed out by InstancedRenderer, valid while queueStamp matches
+    int queueStamp;
+    int queueIndex;
+
+    private static Retention defaultRetention = Retention.KEEP;
+
+    /**
+     * Creates a mesh in the current pool's format, or full floats without a pool.
+     */
     public Mesh(float[] vertices, int[] indices) {
+        this(vertices, indices, geometryPool != null ? geometryPool.getFormat() : VertexFormat.FLOAT);
+    }
+
+    public Mesh(float[] vertices, int[] indices, VertexFormat format) {
+        this.format = format;
+        ByteBuffer vertexBuffer = prepare(vertices, indices);
+        int[] optimized = preparedIndices;
+        preparedIndices = null;
+        upload(vertexBuffer, optimized);
+    }
+
+    /**
+     * Creates a mesh from a generator, which also regenerates it after eviction.
+     */
+    public Mesh(Supplier<MeshLoader.Geometry> source, VertexFormat format) {
+        this(source.get(), format);
+        this.source = source;
+    }
+
+    private Mesh(MeshLoader.Geometry geometry, VertexFormat format) {
+        this(geometry.vertices, geometry.indices, format);
+    }
+
+    /**
+     * Creates an empty mesh that {@link MeshLoader} fills in later. It draws nothing
+     * until {@link #isResident()}.
+     */
+    Mesh(VertexFormat format) {
+        this.format = format;
+        this.loading = true;
+    }
+
+    /**
+     * CPU side of creating a mesh: validates, optimizes and encodes the vertices and leaves
+     * the final indices in preparedIndices. Touches no GL state, so it may run on any thread.
+     * @return the encoded vertices, from MemoryUtil.memAlloc
+     */
+    ByteBuffer prepare(float[] vertices, int[] indices) {
         if (vertices == null || vertices.length == 0) {
             throw new IllegalArgumentException("Vertices array cannot be null or empty");
         }
@@ -36,75 +156,321 @@ public class Mesh implements Renderable, AutoCloseable {
 
         this.vertices = vertices;
         this.vertexCount = indices.length; // Number of indices, not vertices
-        FloatBuffer vertexBuffer = null;
-        IntBuffer indexBuffer = null;
 
-        try {
-            // Create a new FloatBuffer for vertices
-            vertexBuffer = MemoryUtil.memAllocFloat(vertices.length);
-            vertexBuffer.put(vertices).flip();
+        // Data in other layouts cannot be packed and keeps the float layout
+        if (vertices.length % VertexFormat.SOURCE_FLOATS != 0) {
+            if (format != VertexFormat.FLOAT) {
+                throw new IllegalArgumentException("Vertex data is not a multiple of " + VertexFormat.SOURCE_FLOATS + " floats");
+            }
+            preparedIndices = indices;
+            return encodeVertices();
+        }
+
+        // Reorder for the post-transform cache, then for fetch locality; the caller's arrays stay untouched
+        int count = vertices.length / VertexFormat.SOURCE_FLOATS;
+        indices = indices.clone();
+        acmrBefore = MeshOptimizer.computeAcmr(indices, count, MeshOptimizer.CACHE_SIZE);
+        MeshOptimizer.optimizeVertexCache(indices, count);
+        this.vertices = MeshOptimizer.optimizeVertexFetch(vertices, indices, VertexFormat.SOURCE_FLOATS);
+        acmrAfter = MeshOptimizer.computeAcmr(indices, count, MeshOptimizer.CACHE_SIZE);
+        if (!evicted) { // Restores regenerate the same geometry
+            recordAcmr(indices.length / 3, acmrBefore, acmrAfter);
+        }
+        if (count <= 1 << 16) {
+            indexType = GL_UNSIGNED_SHORT;
+        }
+        preparedIndices = indices;
+        return encodeVertices();
+    }
+
+    // The vertices in the mesh's format; a buffer from MemoryUtil.memAlloc
+    private ByteBuffer encodeVertices() {
+        if (vertices.length % VertexFormat.SOURCE_FLOATS != 0) {
+            ByteBuffer raw = MemoryUtil.memAlloc(vertices.length * Float.BYTES);
+            raw.asFloatBuffer().put(vertices);
+            return raw;
+        }
+        return format.encode(vertices, bounds);
+    }
+
+    // Meshes in another format than the pool's, or too large for its 16-bit indices, keep their own buffers
+    private boolean fitsPool() {
+        return geometryPool != null && geometryPool.getFormat() == format && indexType == GeometryPool.INDEX_TYPE
+            && vertices.length % VertexFormat.SOURCE_FLOATS == 0;
+    }
+
+    // GL side of creating a mesh, freeing vertexBuffer
+    private void upload(ByteBuffer vertexBuffer, int[] indices) {
+        GLState.checkRenderThread("Mesh upload");
+        long vertexBytes = vertexBuffer.remaining();
+        if (fitsPool()) {
+            try {
+                geometryPool.allocate(this, vertexBuffer, indices);
+            } finally {
+                MemoryUtil.memFree(vertexBuffer);
+            }
+            vaoId = geometryPool.getVaoId();
+        } else {
+            createBuffers(vertexBuffer, indices);
+        }
+        onResident(vertexBytes, indices);
+    }
+
+    // Accounts the uploaded mesh and drops the CPU copy unless it is retained
+    private void onResident(long vertexBytes, int[] indices) {
+        initialized = true;
+        evicted = false;
+        gpuBytes = vertexBytes + (long) vertexCount * getIndexSize();
+        if (retention == Retention.KEEP) {
+            this.indices = indices;
+        } else {
+            this.vertices = null;
+            this.indices = null;
+        }
+        MeshBudget.onResident(this);
+    }
+
+    /**
+     * Takes over vertex and index buffers that {@link MeshLoader} filled on its own context.
+     * Pooled meshes copy them into the pool on the GPU and delete them; others wrap them
+     * in a VAO of this context, since VAOs are not shared between contexts.
+     */
+    void adoptBuffers(int stagingVboId, int stagingEboId, int[] indices) {
+        GLState.checkRenderThread("Mesh upload");
+        loading = false;
+        long vertexBytes = vertices.length % VertexFormat.SOURCE_FLOATS == 0
+            ? (long) (vertices.length / VertexFormat.SOURCE_FLOATS) * format.getStride()
+            : (long) vertices.length * Float.BYTES;
+        if (fitsPool()) {
+            geometryPool.allocate(this, stagingVboId, stagingEboId);
+            // Deferred until the copies have executed
+            GpuResourceRegistry.release(GpuResourceRegistry.Type.BUFFER, stagingVboId);
+            GpuResourceRegistry.release(GpuResourceRegistry.Type.BUFFER, stagingEboId);
+            vaoId = geometryPool.getVaoId();
+            onResident(vertexBytes, indices);
+            return;
+        }
+        vaoId = glGenVertexArrays();
+        if (vaoId == 0) {
+            throw new RuntimeException("Failed to create VAO");
+        }
+        GpuResourceRegistry.register(GpuResourceRegistry.Type.VERTEX_ARRAY, vaoId, 0, "Mesh " + meshId);
+        vboId = stagingVboId;
+        eboId = stagingEboId;
+        GLState.bindVertexArray(vaoId);
+        GLState.bindBuffer(GL_ARRAY_BUFFER, vboId);
+        format.setupAttributes();
+        GLState.bindBuffer(GL_ELEMENT_ARRAY_BUFFER, eboId);
+        GLState.bindVertexArray(0); // As in createBuffers
+        onResident(vertexBytes, indices);
+    }
+
+    /**
+     * Re-uploads an evicted mesh from its CPU copy, or regenerates it from its source.
+     * @return true if the mesh is resident
+     */
+    public boolean restore() {
+        if (!evicted) {
+            return initialized;
+        }
+        ByteBuffer vertexBuffer;
+        int[] restoredIndices;
+        if (vertices != null && indices != null) {
+            vertexBuffer = encodeVertices();
+            restoredIndices = indices;
+        } else {
+            MeshLoader.Geometry geometry = source.get();
+            vertexBuffer = prepare(geometry.vertices, geometry.indices);
+            restoredIndices = preparedIndices;
+            preparedIndices = null;
+        }
+        upload(vertexBuffer, restoredIndices);
+        MeshBudget.onRestored();
+        return true;
+    }
+
+    /**
+     * Frees the mesh's GPU memory, keeping it restorable. Meshes without a CPU copy or
+     * source cannot be evicted.
+     * @return true if the mesh was evicted
+     */
+    public boolean evict() {
+        if (!initialized || !isEvictable()) {
+            return false;
+        }
+        releaseBuffers();
+        evicted = true;
+        return true;
+    }
 
-            // Create a new IntBuffer for indices
-            indexBuffer = MemoryUtil.memAllocInt(indices.length);
-            indexBuffer.put(indices).flip();
+    public boolean isEvictable() {
+        return (vertices != null && indices != null) || source != null;
+    }
+
+    // Creates the mesh's own VAO/VBO/EBO, freeing vertexBuffer
+    private void createBuffers(ByteBuffer vertexBuffer, int[] indices) {
+        ByteBuffer indexBuffer = null;
+
+        try {
+            indexBuffer = encodeIndices(indices);
 
             // Generate and bind VAO
             vaoId = glGenVertexArrays();
             if (vaoId == 0) {
                 throw new RuntimeException("Failed to create VAO");
             }
-            glBindVertexArray(vaoId);
+            GpuResourceRegistry.register(GpuResourceRegistry.Type.VERTEX_ARRAY, vaoId, 0, "Mesh " + meshId);
+            GLState.bindVertexArray(vaoId);
 
             // Generate and bind VBO
             vboId = glGenBuffers();
             if (vboId == 0) {
                 throw new RuntimeException("Failed to create VBO");
             }
-            glBindBuffer(GL_ARRAY_BUFFER, vboId);
+            GpuResourceRegistry.register(GpuResourceRegistry.Type.BUFFER, vboId, vertexBuffer.remaining(), "Mesh " + meshId + " vertices");
+            GLState.bindBuffer(GL_ARRAY_BUFFER, vboId);
             glBufferData(GL_ARRAY_BUFFER, vertexBuffer, GL_STATIC_DRAW);
 
             // Configure vertex attributes (position and normal)
-            glVertexAttribPointer(0, 3, GL_FLOAT, false, 6 * Float.BYTES, 0);
-            glEnableVertexAttribArray(0);
-            glVertexAttribPointer(1, 3, GL_FLOAT, false, 6 * Float.BYTES, 3 * Float.BYTES);
-            glEnableVertexAttribArray(1);
+            format.setupAttributes();
 
             // Generate and bind EBO
             eboId = glGenBuffers();
             if (eboId == 0) {
                 throw new RuntimeException("Failed to create EBO");
             }
-            glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, eboId);
+            GpuResourceRegistry.register(GpuResourceRegistry.Type.BUFFER, eboId, indexBuffer.remaining(), "Mesh " + meshId + " indices");
+            GLState.bindBuffer(GL_ELEMENT_ARRAY_BUFFER, eboId);
             glBufferData(GL_ELEMENT_ARRAY_BUFFER, indexBuffer, GL_STATIC_DRAW);
 
-            // Unbind
-            glBindVertexArray(0);
-            glBindBuffer(GL_ARRAY_BUFFER, 0);
-            glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
-            
-            initialized = true;
+            // Unbind so a later element buffer bind cannot land in this mesh's VAO
+            GLState.bindVertexArray(0);
         } finally {
             // Free the memory if buffers were created
-            if (vertexBuffer != null) {
-                MemoryUtil.memFree(vertexBuffer);
-            }
+            MemoryUtil.memFree(vertexBuffer);
             if (indexBuffer != null) {
                 MemoryUtil.memFree(indexBuffer);
             }
         }
     }
 
+    /**
+     * Indices in the mesh's index type.
+     * @return a buffer from MemoryUtil.memAlloc; the caller frees it
+     */
+    ByteBuffer encodeIndices(int[] indices) {
+        ByteBuffer indexBuffer = MemoryUtil.memAlloc(indices.length * getIndexSize());
+        for (int index : indices) {
+            if (indexType == GL_UNSIGNED_SHORT) {
+                indexBuffer.putShort((short) index);
+            } else {
+                indexBuffer.putInt(index);
+            }
+        }
+        indexBuffer.flip();
+        return indexBuffer;
+    }
+
     @Override
     public void render() {
-        if (!initialized) {
+        if (!restore()) {
             throw new IllegalStateException("Mesh not properly initialized");
         }
         
-        try {
-            glBindVertexArray(vaoId);
-            glDrawElements(GL_TRIANGLES, vertexCount, GL_UNSIGNED_INT, 0);
-        } finally {
-            glBindVertexArray(0);
+        GLState.bindVertexArray(vaoId);
+        if (pool != null) {
+            glDrawElementsBaseVertex(GL_TRIANGLES, vertexCount, indexType, (long) firstIndex * getIndexSize(), baseVertex);
+        } else {
+            glDrawElements(GL_TRIANGLES, vertexCount, indexType, 0);
+        }
+    }
+
+    /**
+     * Draws this mesh instanceCount times, reading per-instance data from the
+     * buffer attached with {@link #setInstanceBuffer(int)}.
+     */
+    public void renderInstanced(int instanceCount) {
+        if (!restore()) {
+            throw new IllegalStateException("Mesh not properly initialized");
+        }
+
+        GLState.bindVertexArray(vaoId);
+        drawInstanced(instanceCount);
+    }
+
+    /**
+     * Binds this mesh's VAO for a sequence of {@link #drawInstanced(int)} calls.
+     */
+    public void bind() {
+        if (!restore()) {
+            throw new IllegalStateException("Mesh not properly initialized");
+        }
+        GLState.bindVertexArray(vaoId);
+    }
+
+    /**
+     * Like {@link #renderInstanced(int)}, but expects the VAO to be bound already.
+     */
+    public void drawInstanced(int instanceCount) {
+        if (pool != null) {
+            glDrawElementsInstancedBaseVertex(GL_TRIANGLES, vertexCount, indexType,
+                (long) firstIndex * getIndexSize(), instanceCount, baseVertex);
+        } else {
+            glDrawElementsInstanced(GL_TRIANGLES, vertexCount, indexType, 0, instanceCount);
+        }
+    }
+
+    /**
+     * Wires the given instance VBO into this mesh's VAO as attributes 2-9 with a divisor of 1.
+     * The attribute pointers are only rebuilt when the buffer changes.
+     * @return true if the attributes were rebuilt
+     */
+    public boolean setInstanceBuffer(int instanceVboId) {
+        return setInstanceBuffer(instanceVboId, 0);
+    }
+
+    /**
+     * Like {@link #setInstanceBuffer(int)}, with the attributes starting at firstInstance.
+     * Pooled meshes share the attributes of their pool's VAO.
+     */
+    public boolean setInstanceBuffer(int instanceVboId, int firstInstance) {
+        if (!initialized) {
+            return false;
+        }
+        if (pool != null) {
+            return pool.setInstanceBuffer(instanceVboId, firstInstance);
+        }
+        if (this.instanceVboId == instanceVboId && this.firstInstance == firstInstance) {
+            return false;
+        }
+
+        GLState.bindVertexArray(vaoId);
+        GLState.bindBuffer(GL_ARRAY_BUFFER, instanceVboId);
+        setupInstanceAttributes((long) firstInstance * INSTANCE_FLOATS * Float.BYTES);
+        this.instanceVboId = instanceVboId;
+        this.firstInstance = firstInstance;
+        return true;
+    }
+
+    /**
+     * Points attributes 2-9 of the bound VAO at the bound GL_ARRAY_BUFFER, starting at offset.
+     */
+    static void setupInstanceAttributes(long offset) {
+        int stride = INSTANCE_FLOATS * Float.BYTES;
+        for (int column = 0; column < 4; column++) {
+            int location = INSTANCE_MODEL_LOCATION + column;
+            glVertexAttribPointer(location, 4, GL_FLOAT, false, stride, offset + (long) column * 4 * Float.BYTES);
+            glEnableVertexAttribArray(location);
+            glVertexAttribDivisor(location, 1);
+        }
+        glVertexAttribPointer(INSTANCE_COLOR_LOCATION, 4, GL_FLOAT, false, stride, offset + 16 * Float.BYTES);
+        glEnableVertexAttribArray(INSTANCE_COLOR_LOCATION);
+        glVertexAttribDivisor(INSTANCE_COLOR_LOCATION, 1);
+        for (int column = 0; column < 3; column++) {
+            int location = INSTANCE_NORMAL_LOCATION + column;
+            glVertexAttribPointer(location, 3, GL_FLOAT, false, stride, offset + (long) (20 + column * 3) * Float.BYTES);
+            glEnableVertexAttribArray(location);
+            glVertexAttribDivisor(location, 1);
         }
     }
 
@@ -118,19 +484,74 @@ public class Mesh implements Renderable, AutoCloseable {
         if (closed) {
             return;
         }
+        for (Mesh lod : lodLevels) {
+            lod.cleanup();
+        }
+        lodLevels = new Mesh[0];
+        lodScreenSizes = new float[0];
+        loading = false; // MeshLoader deletes the buffers once they arrive
+        evicted = false;
+        releaseBuffers();
+        vertices = null;
+        indices = null;
+        source = null;
+    }
+
+    // Gives the GPU memory back to the pool or the registry
+    private void releaseBuffers() {
         if (initialized) {
-            if (vboId != 0) {
-                glDeleteBuffers(vboId);
-                vboId = 0;
-            }
-            if (vaoId != 0) {
-                glDeleteVertexArrays(vaoId);
-                vaoId = 0;
-            }
+            MeshBudget.onReleased(this);
+        }
+        if (initialized && pool != null) {
+            // The pool owns the VAO and buffers
+            pool.free(this);
+            vaoId = 0;
+            initialized = false;
+        } else if (initialized) {
+            // Deleted once the GPU has finished the frames that may still draw them
+            GpuResourceRegistry.release(GpuResourceRegistry.Type.BUFFER, vboId);
+            GpuResourceRegistry.release(GpuResourceRegistry.Type.BUFFER, eboId);
+            GpuResourceRegistry.release(GpuResourceRegistry.Type.VERTEX_ARRAY, vaoId);
+            vboId = 0;
+            eboId = 0;
+            vaoId = 0;
+            instanceVboId = 0;
             initialized = false;
         }
     }
     
+    /**
+     * Adds a reference to this mesh. Every call must be paired with {@link #release()}.
+     * @return this mesh, for chaining
+     */
+    public Mesh retain() {
+        if (refCount <= 0) {
+            throw new IllegalStateException("Cannot retain a released mesh");
+        }
+        refCount++;
+        return this;
+    }
+
+    /**
+     * Drops a reference to this mesh. The GPU buffers are deleted once the last
+     * reference is released, and shared meshes are removed from the {@link MeshCache}.
+     */
+    public void release() {
+        if (refCount <= 0) {
+            return;
+        }
+        if (--refCount == 0) {
+            if (cacheKey != null) {
+                MeshCache.evict(this);
+            }
+            cleanup();
+        }
+    }
+
+    public int getRefCount() {
+        return refCount;
+    }
+
     /**
      * Closes this resource, relinquishing any underlying resources.
      * This method is invoked automatically on objects managed by the
@@ -152,9 +573,190 @@ public class Mesh implements Renderable, AutoCloseable {
         return closed;
     }
 
+    /**
+     * Attaches coarser levels of detail, which this mesh then owns and cleans up.
+     * @param levels meshes for levels 1..n, each coarser than the one before
+     * @param screenSizes projected size in pixels below which level i switches to level i + 1,
+     *                    decreasing, one per entry of levels
+     */
+    public void setLodChain(Mesh[] levels, float[] screenSizes) {
+        if (levels.length != screenSizes.length) {
+            throw new IllegalArgumentException("Need one screen size per level: " + levels.length + " != " + screenSizes.length);
+        }
+        for (int i = 1; i < screenSizes.length; i++) {
+            if (screenSizes[i] >= screenSizes[i - 1]) {
+                throw new IllegalArgumentException("LOD screen sizes must decrease");
+            }
+        }
+        for (Mesh lod : lodLevels) {
+            lod.cleanup();
+        }
+        lodLevels = levels.clone();
+        lodScreenSizes = screenSizes.clone();
+    }
+
+    /**
+     * Attaches levels with default screen sizes: level 0 down to {@link #DEFAULT_LOD_SCREEN_SIZE},
+     * then scaled with the square root of each level's triangle count, so triangles keep
+     * roughly the same size in pixels across levels.
+     */
+    public void setLodChain(Mesh[] levels) {
+        float[] sizes = new float[levels.length];
+        float size = DEFAULT_LOD_SCREEN_SIZE;
+        for (int i = 0; i < levels.length; i++) {
+            sizes[i] = size;
+            size = DEFAULT_LOD_SCREEN_SIZE * (float) Math.sqrt((double) levels[i].vertexCount / vertexCount);
+        }
+        setLodChain(levels, sizes);
+    }
+
+    /**
+     * Generates up to maxLevels coarser levels by quadric edge collapse, each with about
+     * half the triangles of the one before, and attaches them with the default screen sizes.
+     * Stops early once the simplifier can no longer make progress within its error bound.
+     * @param sourceVertices the 6-float vertices this mesh was created from
+     * @param indices the indices it was created with
+     */
+    public void buildLodChain(float[] sourceVertices, int[] indices, int maxLevels) {
+        if (sourceVertices.length % VertexFormat.SOURCE_FLOATS != 0) {
+            throw new IllegalArgumentException("LODs need vertices of " + VertexFormat.SOURCE_FLOATS + " floats");
+        }
+        Mesh[] levels = new Mesh[maxLevels];
+        int count = 0;
+        int[] current = indices;
+        while (count < maxLevels) {
+            int[] simplified = MeshSimplifier.simplify(sourceVertices, VertexFormat.SOURCE_FLOATS, current,
+                current.length / 6 * 3, LOD_MAX_ERROR);
+            if (simplified.length == 0 || simplified.length > current.length * 3 / 4) {
+                break; // Too little gained for another level
+            }
+            // Keep only the vertices the level still uses
+            int[] levelIndices = simplified.clone();
+            float[] levelVertices = MeshOptimizer.optimizeVertexFetch(sourceVertices, levelIndices, VertexFormat.SOURCE_FLOATS);
+            int used = 0;
+            for (int index : levelIndices) {
+                used = Math.max(used, index + 1);
+            }
+            levelVertices = Arrays.copyOf(levelVertices, used * VertexFormat.SOURCE_FLOATS);
+            levels[count++] = new Mesh(levelVertices, levelIndices, format);
+            current = simplified;
+        }
+        setLodChain(Arrays.copyOf(levels, count));
+    }
+
+    /**
+     * Picks the level of detail for an object covering screenSize pixels that used
+     * level current last frame. A level only changes once the size is past its threshold
+     * by {@link #LOD_HYSTERESIS}, so objects near a threshold do not flicker between levels.
+     */
+    public int selectLod(float screenSize, int current) {
+        int level = Math.max(0, Math.min(current, lodLevels.length));
+        while (level < lodLevels.length && screenSize < lodScreenSizes[level] * (1.0f - LOD_HYSTERESIS)) {
+            level++;
+        }
+        while (level > 0 && screenSize > lodScreenSizes[level - 1] * (1.0f + LOD_HYSTERESIS)) {
+            level--;
+        }
+        return level;
+    }
+
+    /**
+     * The mesh for a level of detail, clamped to the coarsest level; 0 is this mesh.
+     */
+    public Mesh getLod(int level) {
+        if (level <= 0 || lodLevels.length == 0) {
+            return this;
+        }
+        return lodLevels[Math.min(level, lodLevels.length) - 1];
+    }
+
+    // Number of levels including this mesh
+    public int getLodCount() { return lodLevels.length + 1; }
+    public float[] getLodScreenSizes() { return lodScreenSizes; }
+
+    /**
+     * Makes meshes created from now on sub-allocate from the given pool; null restores
+     * standalone meshes. Existing meshes are not affected.
+     */
+    public static void setGeometryPool(GeometryPool pool) {
+        geometryPool = pool;
+    }
+
+    public static GeometryPool getGeometryPool() { return geometryPool; }
+
+    // True once the mesh has GPU buffers and can be drawn
+    public boolean isResident() { return initialized; }
+    // Resident, or evicted and restored when next drawn
+    public boolean isDrawable() { return initialized || evicted; }
+    public boolean isEvicted() { return evicted; }
+    // Vertex and index bytes on the GPU while resident
+    public long getGpuBytes() { return gpuBytes; }
+
+    public Retention getRetention() { return retention; }
+    /**
+     * Switching to DISCARD drops the CPU copy of a resident mesh right away.
+     */
+    public void setRetention(Retention retention) {
+        this.retention = retention;
+        if (retention == Retention.DISCARD && initialized) {
+            vertices = null;
+            indices = null;
+        }
+    }
+
+    // Retention of meshes created from now on
+    public static void setDefaultRetention(Retention retention) { defaultRetention = retention; }
+    public static Retention getDefaultRetention() { return defaultRetention; }
+
+    /**
+     * Sets the generator that recreates this mesh's geometry after eviction.
+     */
+    public void setSource(Supplier<MeshLoader.Geometry> source) { this.source = source; }
+    // True while MeshLoader is still generating or uploading the mesh
+    public boolean isLoading() { return loading; }
+
+    public int getMeshId() { return meshId; }
+    public VertexFormat getFormat() { return format; }
+
+    // GL_UNSIGNED_SHORT for meshes of up to 65536 vertices, GL_UNSIGNED_INT otherwise
+    public int getIndexType() { return indexType; }
+    public int getIndexSize() { return indexType == GL_UNSIGNED_SHORT ? Short.BYTES : Integer.BYTES; }
+
+    // FIFO cache misses per triangle of the index order as given and as optimized
+    public float getAcmrBefore() { return acmrBefore; }
+    public float getAcmrAfter() { return acmrAfter; }
+
+    // prepare() also runs on MeshLoader workers
+    private static synchronized void recordAcmr(int triangles, float before, float after) {
+        optimizedMeshes++;
+        optimizedTriangles += triangles;
+        acmrBeforeSum += (double) before * triangles;
+        acmrAfterSum += (double) after * triangles;
+    }
+
+    /**
+     * ACMR before and after optimization over all meshes created so far, weighted by
+     * triangle count, so generated and imported meshes are both covered.
+     */
+    public static synchronized String getAcmrSummary() {
+        if (optimizedTriangles == 0) {
+            return "ACMR: no meshes optimized";
+        }
+        return String.format("ACMR: %.3f -> %.3f over %d meshes, %d triangles",
+            acmrBeforeSum / optimizedTriangles, acmrAfterSum / optimizedTriangles, optimizedMeshes, optimizedTriangles);
+    }
+
+    /**
+     * Center xyz and half extents xyz of the positions, which snorm16 formats are relative to.
+     */
+    public float[] getBounds() { return bounds; }
+    public GeometryPool getPool() { return pool; }
+    public int getBaseVertex() { return baseVertex; }
+    public int getFirstIndex() { return firstIndex; }
     public int getVaoId() { return vaoId; }
     public int getVboId() { return vboId; }
     public int getEboId() { return eboId; }
     public int getVertexCount() { return vertexCount; }
+    // Null once the CPU copy was discarded
     public float[] getVertices() { return vertices; }
 }
\ No newline at end of file
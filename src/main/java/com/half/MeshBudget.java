@@ -0,0 +1,128 @@
+package com.half;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * MeshBudget - caps the GPU memory held by mesh vertex and index data.
+ *
+ * Resident meshes are kept in least-recently-rendered order; the renderer marks each mesh
+ * it draws with {@link #markUsed}. After the frame, {@link #enforce()} evicts the coldest
+ * meshes until the total fits the budget again. An evicted mesh keeps its id, bounds and
+ * LOD chain and is re-uploaded, or regenerated from its source, the next time it is drawn
+ * (see {@link Mesh#restore()}). Meshes drawn in the current frame are never evicted, so a
+ * working set larger than the budget stays over it rather than thrashing.
+ * Like all GL work, the budget must only be used from the render thread.
+ */
+public final class MeshBudget {
+    private static long budgetBytes; // 0 means unlimited
+    private static long residentBytes;
+    // Access order: the first entry is the least recently used
+    private static final LinkedHashMap<Mesh, Boolean> resident = new LinkedHashMap<>(64, 0.75f, true);
+    private static int frame;
+
+    // Statistics
+    private static long evictionCount;
+    private static long restoreCount;
+    private static int lastEnforceEvictions;
+
+    private MeshBudget() {}
+
+    /**
+     * Sets the budget in bytes; 0 removes it. Takes effect at the next {@link #enforce()}.
+     */
+    public static void setBudget(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Budget must not be negative: " + bytes);
+        }
+        budgetBytes = bytes;
+    }
+
+    public static long getBudget() { return budgetBytes; }
+
+    // Called by Mesh whenever it gains GPU buffers
+    static void onResident(Mesh mesh) {
+        if (resident.put(mesh, Boolean.TRUE) == null) {
+            residentBytes += mesh.getGpuBytes();
+        }
+    }
+
+    // Called by Mesh before it gives its GPU buffers back
+    static void onReleased(Mesh mesh) {
+        if (resident.remove(mesh) != null) {
+            residentBytes -= mesh.getGpuBytes();
+        }
+    }
+
+    static void onRestored() {
+        restoreCount++;
+    }
+
+    /**
+     * Starts a new frame; meshes marked from now on are protected from the next eviction.
+     */
+    public static void beginFrame() {
+        frame++;
+    }
+
+    /**
+     * Records that the mesh is drawn this frame.
+     */
+    public static void markUsed(Mesh mesh) {
+        if (mesh.lastUsedFrame != frame) {
+            mesh.lastUsedFrame = frame;
+            resident.get(mesh); // Moves it to the most recent end
+        }
+    }
+
+    /**
+     * Evicts the least recently drawn meshes until the resident total fits the budget.
+     * Call once per frame after drawing.
+     * @return the number of meshes evicted
+     */
+    public static int enforce() {
+        lastEnforceEvictions = 0;
+        if (budgetBytes == 0 || residentBytes <= budgetBytes) {
+            return 0;
+        }
+        // Collect first: evicting removes the mesh from the map
+        List<Mesh> victims = new ArrayList<>();
+        long excess = residentBytes - budgetBytes;
+        Iterator<Mesh> coldest = resident.keySet().iterator();
+        while (excess > 0 && coldest.hasNext()) {
+            Mesh mesh = coldest.next();
+            if (mesh.lastUsedFrame == frame) {
+                break; // Everything after it was drawn this frame too
+            }
+            if (mesh.isEvictable()) {
+                victims.add(mesh);
+                excess -= mesh.getGpuBytes();
+            }
+        }
+        for (Mesh mesh : victims) {
+            if (mesh.evict()) {
+                lastEnforceEvictions++;
+            }
+        }
+        evictionCount += lastEnforceEvictions;
+        return lastEnforceEvictions;
+    }
+
+    public static long getResidentBytes() { return residentBytes; }
+    public static int getResidentCount() { return resident.size(); }
+    public static boolean isOverBudget() { return budgetBytes != 0 && residentBytes > budgetBytes; }
+    public static long getEvictionCount() { return evictionCount; }
+    public static long getRestoreCount() { return restoreCount; }
+    public static int getLastEnforceEvictions() { return lastEnforceEvictions; }
+
+    /**
+     * One line with resident bytes against the budget and eviction totals.
+     */
+    public static String getReport() {
+        return String.format("Mesh memory: %.1f KB of %s in %d meshes, %d evictions, %d restores",
+            residentBytes / 1024.0, budgetBytes == 0 ? "unlimited" : String.format("%.1f KB", budgetBytes / 1024.0),
+            resident.size(), evictionCount, restoreCount);
+    }
+}
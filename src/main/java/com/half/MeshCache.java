@@ -0,0 +1,192 @@
+package com.half;
+
+import com.half.gameobjects.PrismMesh;
+import com.half.gameobjects.PyramidMesh;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MeshCache - hands out shared, reference counted meshes for the built-in primitives.
+ * Objects with the same primitive type and parameters share one VAO/VBO/EBO.
+ * Every mesh returned here must be given back with {@link Mesh#release()}.
+ * Like all GL work, the cache must only be used from the render thread.
+ */
+public final class MeshCache {
+    private static final Map<Key, Mesh> meshes = new HashMap<>();
+
+    // Coarsest procedural sphere level
+    private static final int MAX_SPHERE_LODS = 3;
+    private static final int MIN_SPHERE_SECTORS = 8;
+    private static final int MIN_SPHERE_STACKS = 4;
+
+    private static MeshLoader loader;
+
+    // Statistics
+    private static long hits;
+    private static long misses;
+
+    private MeshCache() {}
+
+    public static Mesh getCube(float size) {
+        Key key = new Key(Key.CUBE, size);
+        Mesh mesh = lookup(key);
+        return mesh != null ? mesh : store(key, new CubeMesh(size));
+    }
+
+    /**
+     * Spheres come with a chain of coarser levels of detail, generated with half the
+     * sectors and stacks per level. With a loader set, they are generated in the background
+     * and draw once resident.
+     */
+    public static Mesh getSphere(float radius, int sectorCount, int stackCount) {
+        Key key = new Key(Key.SPHERE, radius, sectorCount, stackCount);
+        Mesh mesh = lookup(key);
+        if (mesh != null) {
+            return mesh;
+        }
+        mesh = createSphere(radius, sectorCount, stackCount);
+        Mesh[] levels = new Mesh[MAX_SPHERE_LODS];
+        float[] screenSizes = new float[MAX_SPHERE_LODS];
+        float size = Mesh.DEFAULT_LOD_SCREEN_SIZE;
+        int count = 0;
+        for (int sectors = sectorCount / 2, stacks = stackCount / 2;
+                count < MAX_SPHERE_LODS && sectors >= MIN_SPHERE_SECTORS && stacks >= MIN_SPHERE_STACKS;
+                sectors /= 2, stacks /= 2) {
+            screenSizes[count] = size;
+            levels[count++] = createSphere(radius, sectors, stacks);
+            // Triangle counts are known up front, even for meshes still loading
+            size = Mesh.DEFAULT_LOD_SCREEN_SIZE * (float) Math.sqrt((double) sectors * stacks / ((double) sectorCount * stackCount));
+        }
+        mesh.setLodChain(Arrays.copyOf(levels, count), Arrays.copyOf(screenSizes, count));
+        return store(key, mesh);
+    }
+
+    // Spheres are cheap to regenerate, so they keep no CPU copy
+    private static Mesh createSphere(float radius, int sectors, int stacks) {
+        Mesh mesh = loader == null
+            ? new SphereMesh(radius, sectors, stacks)
+            : loader.load(() -> new MeshLoader.Geometry(
+                MeshGenerator.generateSphereVertices(radius, sectors, stacks),
+                MeshGenerator.generateSphereIndices(sectors, stacks)));
+        mesh.setRetention(Mesh.Retention.DISCARD);
+        return mesh;
+    }
+
+    /**
+     * Makes spheres requested from now on load through the given loader; null creates them
+     * synchronously.
+     */
+    public static void setLoader(MeshLoader meshLoader) {
+        loader = meshLoader;
+    }
+
+    public static Mesh getPyramid(float baseSize, float height) {
+        Key key = new Key(Key.PYRAMID, baseSize, height);
+        Mesh mesh = lookup(key);
+        return mesh != null ? mesh : store(key, new PyramidMesh(baseSize, height));
+    }
+
+    public static Mesh getPrism(float width, float height, float depth) {
+        Key key = new Key(Key.PRISM, width, height, depth);
+        Mesh mesh = lookup(key);
+        return mesh != null ? mesh : store(key, new PrismMesh(width, height, depth));
+    }
+
+    private static Mesh lookup(Key key) {
+        GLState.checkRenderThread("MeshCache");
+        Mesh mesh = meshes.get(key);
+        if (mesh == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return mesh.retain();
+    }
+
+    private static Mesh store(Key key, Mesh mesh) {
+        mesh.cacheKey = key;
+        meshes.put(key, mesh);
+        return mesh;
+    }
+
+    /**
+     * Called by {@link Mesh#release()} when the last reference to a shared mesh is dropped.
+     */
+    static void evict(Mesh mesh) {
+        if (mesh.cacheKey != null && meshes.get(mesh.cacheKey) == mesh) {
+            meshes.remove(mesh.cacheKey);
+        }
+        mesh.cacheKey = null;
+    }
+
+    /**
+     * Deletes every cached mesh regardless of outstanding references. Used at shutdown.
+     */
+    public static void clear() {
+        for (Mesh mesh : meshes.values()) {
+            mesh.cacheKey = null;
+            mesh.cleanup();
+        }
+        meshes.clear();
+    }
+
+    // Number of distinct meshes (and therefore VAO/VBO/EBO sets) alive in the cache
+    public static int getMeshCount() { return meshes.size(); }
+    public static long getHits() { return hits; }
+    public static long getMisses() { return misses; }
+
+    /**
+     * Cache counters, each resident mesh's ACMR before and after optimization, and the
+     * ACMR totals over all meshes, including ones created outside the cache.
+     */
+    public static String getReport() {
+        StringBuilder report = new StringBuilder(String.format("Mesh cache: %d meshes, %d hits, %d misses",
+            meshes.size(), hits, misses));
+        for (Map.Entry<Key, Mesh> entry : meshes.entrySet()) {
+            Mesh mesh = entry.getValue();
+            if (!mesh.isLoading()) {
+                report.append(String.format("%n  %s: ACMR %.3f -> %.3f", entry.getKey(), mesh.getAcmrBefore(), mesh.getAcmrAfter()));
+            }
+        }
+        report.append(String.format("%n")).append(Mesh.getAcmrSummary());
+        return report.toString();
+    }
+
+    private static final class Key {
+        static final int CUBE = 0;
+        static final int SPHERE = 1;
+        static final int PYRAMID = 2;
+        static final int PRISM = 3;
+        private static final String[] NAMES = { "cube", "sphere", "pyramid", "prism" };
+
+        private final int type;
+        private final float[] params;
+        private final int hash;
+
+        Key(int type, float... params) {
+            this.type = type;
+            this.params = params;
+            this.hash = 31 * type + Arrays.hashCode(params);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return type == other.type && Arrays.equals(params, other.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return NAMES[type] + " " + Arrays.toString(params);
+        }
+    }
+}
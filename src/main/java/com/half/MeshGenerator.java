@@ -1,82 +1,136 @@
 package com.half;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 
+/**
+ * MeshGenerator - vertex (position, normal) and index data for the built-in primitives.
+ * Sphere data can be written straight into a caller's buffer, e.g. a mapped GL buffer or
+ * a MemoryUtil allocation: the counts are known up front from {@link #sphereVertexCount}
+ * and {@link #sphereIndexCount}, and nothing is allocated per vertex. Tessellations of
+ * more than {@link #PARALLEL_VERTICES} vertices are split by rows across the JobSystem.
+ */
 public class MeshGenerator {
+    public static final int PARALLEL_VERTICES = 1 << 16;
+    private static final int VERTICES_PER_JOB = 1 << 13;
+    private static final JobSystem jobs = new JobSystem();
+
+    public static int sphereVertexCount(int sectorCount, int stackCount) {
+        return (stackCount + 1) * (sectorCount + 1);
+    }
+
+    // Top and bottom stacks have one triangle per sector, the others two
+    public static int sphereIndexCount(int sectorCount, int stackCount) {
+        return Math.max(0, 6 * sectorCount * (stackCount - 1));
+    }
 
     public static float[] generateSphereVertices(float radius, int sectorCount, int stackCount) {
-        List<Float> vertices = new ArrayList<>();
+        float[] vertices = new float[sphereVertexCount(sectorCount, stackCount) * 6];
+        writeSphereVertices(radius, sectorCount, stackCount, FloatBuffer.wrap(vertices));
+        return vertices;
+    }
+
+    public static int[] generateSphereIndices(int sectorCount, int stackCount) {
+        int[] indices = new int[sphereIndexCount(sectorCount, stackCount)];
+        writeSphereIndices(sectorCount, stackCount, IntBuffer.wrap(indices));
+        return indices;
+    }
 
-        float x, y, z, xy;
-        float nx, ny, nz, lengthInv = 1.0f / radius;
+    /**
+     * Writes {@link #sphereVertexCount} vertices of 6 floats at the buffer's position and
+     * advances it past them.
+     */
+    public static void writeSphereVertices(float radius, int sectorCount, int stackCount, FloatBuffer out) {
+        int floats = sphereVertexCount(sectorCount, stackCount) * 6;
+        checkRemaining(out.remaining(), floats);
+        int base = out.position();
+        int rowFloats = (sectorCount + 1) * 6;
+        // Absolute puts into disjoint rows, so chunks can run on any thread
+        forRows(stackCount + 1, sectorCount + 1, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                writeSphereRow(radius, sectorCount, stackCount, i, out, base + i * rowFloats);
+            }
+        });
+        out.position(base + floats);
+    }
 
+    private static void writeSphereRow(float radius, int sectorCount, int stackCount, int i, FloatBuffer out, int offset) {
+        float lengthInv = 1.0f / radius;
         float sectorStep = 2 * (float)Math.PI / sectorCount;
         float stackStep = (float)Math.PI / stackCount;
-        float sectorAngle, stackAngle;
-
-        // Generate vertices and normals
-        for (int i = 0; i <= stackCount; ++i) {
-            stackAngle = (float)Math.PI / 2 - i * stackStep;
-            xy = radius * (float)Math.cos(stackAngle);
-            z = radius * (float)Math.sin(stackAngle);
-
-            for (int j = 0; j <= sectorCount; ++j) {
-                sectorAngle = j * sectorStep;
-
-                // Vertex position
-                x = xy * (float)Math.cos(sectorAngle);
-                y = xy * (float)Math.sin(sectorAngle);
-                vertices.add(x);
-                vertices.add(y);
-                vertices.add(z);
-
-                // Normalized normal
-                nx = x * lengthInv;
-                ny = y * lengthInv;
-                nz = z * lengthInv;
-                vertices.add(nx);
-                vertices.add(ny);
-                vertices.add(nz);
-            }
-        }
 
-        float[] vertexArray = new float[vertices.size()];
-        for (int i = 0; i < vertexArray.length; i++) {
-            vertexArray[i] = vertices.get(i);
+        float stackAngle = (float)Math.PI / 2 - i * stackStep;
+        float xy = radius * (float)Math.cos(stackAngle);
+        float z = radius * (float)Math.sin(stackAngle);
+
+        for (int j = 0; j <= sectorCount; ++j) {
+            float sectorAngle = j * sectorStep;
+
+            // Vertex position
+            float x = xy * (float)Math.cos(sectorAngle);
+            float y = xy * (float)Math.sin(sectorAngle);
+            out.put(offset, x);
+            out.put(offset + 1, y);
+            out.put(offset + 2, z);
+
+            // Normalized normal
+            out.put(offset + 3, x * lengthInv);
+            out.put(offset + 4, y * lengthInv);
+            out.put(offset + 5, z * lengthInv);
+            offset += 6;
         }
-        return vertexArray;
     }
 
-    public static int[] generateSphereIndices(int sectorCount, int stackCount) {
-        List<Integer> indices = new ArrayList<>();
-
-        // Generate indices
-        int k1, k2;
-        for (int i = 0; i < stackCount; ++i) {
-            k1 = i * (sectorCount + 1);
-            k2 = k1 + sectorCount + 1;
-
-            for (int j = 0; j < sectorCount; ++j, ++k1, ++k2) {
-                if (i != 0) {
-                    indices.add(k1);
-                    indices.add(k2);
-                    indices.add(k1 + 1);
-                }
-
-                if (i != (stackCount - 1)) {
-                    indices.add(k1 + 1);
-                    indices.add(k2);
-                    indices.add(k2 + 1);
-                }
+    /**
+     * Writes {@link #sphereIndexCount} indices at the buffer's position and advances it
+     * past them. Indices are relative to the first vertex of the sphere.
+     */
+    public static void writeSphereIndices(int sectorCount, int stackCount, IntBuffer out) {
+        int count = sphereIndexCount(sectorCount, stackCount);
+        checkRemaining(out.remaining(), count);
+        int base = out.position();
+        forRows(stackCount, sectorCount, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                // Every stack before i has 6 indices per sector, except the top one with 3
+                int offset = base + 6 * sectorCount * i - (i > 0 ? 3 * sectorCount : 0);
+                writeSphereIndexRow(sectorCount, stackCount, i, out, offset);
+            }
+        });
+        out.position(base + count);
+    }
+
+    private static void writeSphereIndexRow(int sectorCount, int stackCount, int i, IntBuffer out, int offset) {
+        int k1 = i * (sectorCount + 1);
+        int k2 = k1 + sectorCount + 1;
+
+        for (int j = 0; j < sectorCount; ++j, ++k1, ++k2) {
+            if (i != 0) {
+                out.put(offset++, k1);
+                out.put(offset++, k2);
+                out.put(offset++, k1 + 1);
+            }
+
+            if (i != (stackCount - 1)) {
+                out.put(offset++, k1 + 1);
+                out.put(offset++, k2);
+                out.put(offset++, k2 + 1);
             }
         }
+    }
+
+    // Runs job over [0, rows), split across threads once the mesh is large enough
+    private static void forRows(int rows, int rowVertices, JobSystem.RangeJob job) {
+        if ((long) rows * rowVertices < PARALLEL_VERTICES) {
+            job.run(0, rows);
+        } else {
+            jobs.parallelFor(rows, Math.max(1, VERTICES_PER_JOB / Math.max(1, rowVertices)), job);
+        }
+    }
 
-        int[] indexArray = new int[indices.size()];
-        for (int i = 0; i < indexArray.length; i++) {
-            indexArray[i] = indices.get(i);
+    private static void checkRemaining(int remaining, int required) {
+        if (remaining < required) {
+            throw new IllegalArgumentException("Buffer has room for " + remaining + " values, need " + required);
         }
-        return indexArray;
     }
 
     public static float[] generateCubeVertices(float size) {
@@ -0,0 +1,336 @@
+package com.half;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.lwjgl.glfw.GLFW.*;
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.opengl.GL32.*;
+import static org.lwjgl.system.MemoryUtil.NULL;
+
+/**
+ * MeshLoader - creates meshes off the render thread. {@link #load} returns an empty
+ * {@link Mesh} right away; the renderer skips it until it becomes resident.
+ *
+ * A mesh passes three stages:
+ * 1. A worker thread generates the geometry and runs the CPU part of mesh creation
+ *    (optimization and vertex encoding).
+ * 2. The upload thread copies the data into new buffers on a hidden context that shares
+ *    objects with the main one, then inserts a fence and flushes.
+ * 3. {@link #update()} on the render thread picks up meshes whose fence has signaled.
+ *    VAOs are not shared between contexts, so the mesh gets its VAO here, or has its
+ *    buffers copied into the geometry pool on the GPU.
+ *
+ * The upload thread issues raw GL calls and never touches GLState, whose cache belongs
+ * to the main context. The loader must be created and cleaned up on the main thread,
+ * as GLFW requires for windows.
+ */
+public class MeshLoader {
+    private static final int MAX_ADOPTS_PER_UPDATE = 64; // Bounds the render thread's share of the work
+
+    // One mesh travelling through the stages
+    private static final class Job {
+        final Mesh mesh;
+        final Supplier<Geometry> source;
+        ByteBuffer vertices; // Encoded by the worker, freed by the upload thread
+        int[] indices; // Handed to the mesh, which may retain them
+        int vboId;
+        int eboId;
+        long fence;
+        RuntimeException error;
+
+        Job(Mesh mesh, Supplier<Geometry> source) {
+            this.mesh = mesh;
+            this.source = source;
+        }
+    }
+
+    /**
+     * Vertices (6 floats each) and indices of a mesh, as produced by a generator.
+     */
+    public static final class Geometry {
+        final float[] vertices;
+        final int[] indices;
+
+        public Geometry(float[] vertices, int[] indices) {
+            this.vertices = vertices;
+            this.indices = indices;
+        }
+    }
+
+    // Worker task, kept as a class so cleanup can recover the jobs that never started
+    private final class PrepareTask implements Runnable {
+        final Job job;
+
+        PrepareTask(Job job) {
+            this.job = job;
+        }
+
+        @Override
+        public void run() {
+            prepare(job);
+        }
+    }
+
+    private static final Job STOP = new Job(null, null);
+
+    private final long context; // Hidden window owning the upload context
+    private final ExecutorService workers;
+    private final Thread uploadThread;
+    private final LinkedBlockingQueue<Job> uploads = new LinkedBlockingQueue<>();
+    private final ConcurrentLinkedQueue<Job> uploaded = new ConcurrentLinkedQueue<>();
+    private final ArrayDeque<Job> unsignaled = new ArrayDeque<>(); // Render thread only
+    private final AtomicInteger pending = new AtomicInteger();
+    private boolean closed; // Render thread only
+
+    // Statistics
+    private int loadedCount;
+    private int failedCount;
+    private long lastUpdateNanos;
+
+    /**
+     * @param mainWindow window whose context the uploads are shared with
+     * @param workerThreads threads generating and encoding geometry
+     */
+    public MeshLoader(long mainWindow, int workerThreads) {
+        if (workerThreads < 1) {
+            throw new IllegalArgumentException("Need at least one worker thread: " + workerThreads);
+        }
+        // Same context version and profile as the main window, so the share group is valid
+        glfwDefaultWindowHints();
+        glfwWindowHint(GLFW_VISIBLE, GLFW_FALSE);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, glfwGetWindowAttrib(mainWindow, GLFW_CONTEXT_VERSION_MAJOR));
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MINOR, glfwGetWindowAttrib(mainWindow, GLFW_CONTEXT_VERSION_MINOR));
+        glfwWindowHint(GLFW_OPENGL_PROFILE, glfwGetWindowAttrib(mainWindow, GLFW_OPENGL_PROFILE));
+        glfwWindowHint(GLFW_OPENGL_FORWARD_COMPAT, glfwGetWindowAttrib(mainWindow, GLFW_OPENGL_FORWARD_COMPAT));
+        context = glfwCreateWindow(1, 1, "MeshLoader", NULL, mainWindow);
+        glfwDefaultWindowHints();
+        if (context == NULL) {
+            throw new RuntimeException("Failed to create the shared upload context");
+        }
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "MeshLoader-worker-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        uploadThread = new Thread(this::runUploads, "MeshLoader-upload");
+        uploadThread.setDaemon(true);
+        uploadThread.start();
+    }
+
+    /**
+     * Creates a mesh from geometry generated on a worker thread, in the current pool's
+     * format or full floats without a pool. The mesh is owned by the caller from the start;
+     * cleaning it up before it arrives discards the upload. The source also regenerates
+     * the mesh if it is evicted from GPU memory later.
+     */
+    public Mesh load(Supplier<Geometry> source) {
+        GeometryPool pool = Mesh.getGeometryPool();
+        return load(source, pool != null ? pool.getFormat() : VertexFormat.FLOAT);
+    }
+
+    public Mesh load(Supplier<Geometry> source, VertexFormat format) {
+        if (closed) {
+            throw new IllegalStateException("Mesh loader was cleaned up");
+        }
+        Mesh mesh = new Mesh(format);
+        mesh.setSource(source);
+        Job job = new Job(mesh, source);
+        pending.incrementAndGet();
+        workers.execute(new PrepareTask(job));
+        return mesh;
+    }
+
+    // Worker thread: generate and encode
+    private void prepare(Job job) {
+        try {
+            Geometry geometry = job.source.get();
+            job.vertices = job.mesh.prepare(geometry.vertices, geometry.indices);
+            job.indices = job.mesh.preparedIndices;
+            job.mesh.preparedIndices = null;
+        } catch (RuntimeException e) {
+            job.error = e;
+        }
+        uploads.add(job);
+    }
+
+    // Upload thread: owns the shared context for its whole life
+    private void runUploads() {
+        glfwMakeContextCurrent(context);
+        GL.createCapabilities();
+        try {
+            while (true) {
+                Job job = uploads.take();
+                if (job == STOP) {
+                    break;
+                }
+                if (job.error == null) {
+                    try {
+                        upload(job);
+                    } catch (RuntimeException e) {
+                        job.error = e;
+                    }
+                }
+                if (job.vertices != null) {
+                    MemoryUtil.memFree(job.vertices);
+                    job.vertices = null;
+                }
+                uploaded.add(job);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            GL.setCapabilities(null);
+            glfwMakeContextCurrent(NULL);
+        }
+    }
+
+    private void upload(Job job) {
+        job.vboId = glGenBuffers();
+        job.eboId = glGenBuffers();
+        if (job.vboId == 0 || job.eboId == 0) {
+            throw new RuntimeException("Failed to create mesh buffers on the upload context");
+        }
+        String label = "Mesh " + job.mesh.getMeshId();
+        GpuResourceRegistry.register(GpuResourceRegistry.Type.BUFFER, job.vboId, job.vertices.remaining(), label + " vertices");
+        GpuResourceRegistry.register(GpuResourceRegistry.Type.BUFFER, job.eboId,
+            (long) job.indices.length * job.mesh.getIndexSize(), label + " indices");
+        glBindBuffer(GL_COPY_WRITE_BUFFER, job.vboId);
+        glBufferData(GL_COPY_WRITE_BUFFER, job.vertices, GL_STATIC_DRAW);
+        ByteBuffer indexBuffer = job.mesh.encodeIndices(job.indices);
+        try {
+            glBindBuffer(GL_COPY_WRITE_BUFFER, job.eboId);
+            glBufferData(GL_COPY_WRITE_BUFFER, indexBuffer, GL_STATIC_DRAW);
+        } finally {
+            MemoryUtil.memFree(indexBuffer);
+        }
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+        // The flush makes the fence visible to the main context
+        job.fence = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        glFlush();
+    }
+
+    /**
+     * Makes meshes whose upload has completed resident. Call once per frame on the render
+     * thread; it never waits for the GPU. Does nothing after {@link #cleanup()}.
+     */
+    public void update() {
+        if (closed) {
+            return;
+        }
+        long start = System.nanoTime();
+        Job job;
+        while ((job = uploaded.poll()) != null) {
+            unsignaled.add(job);
+        }
+        int adopted = 0;
+        for (int i = unsignaled.size(); i > 0 && adopted < MAX_ADOPTS_PER_UPDATE; i--) {
+            job = unsignaled.poll();
+            if (job.error == null) {
+                int status = glClientWaitSync(job.fence, 0, 0);
+                if (status == GL_TIMEOUT_EXPIRED) {
+                    unsignaled.add(job); // Check again next frame
+                    continue;
+                }
+                glDeleteSync(job.fence);
+                if (status == GL_WAIT_FAILED) {
+                    job.error = new RuntimeException("glClientWaitSync failed on mesh upload");
+                }
+            }
+            finish(job);
+            adopted++;
+        }
+        lastUpdateNanos = System.nanoTime() - start;
+    }
+
+    private void finish(Job job) {
+        pending.decrementAndGet();
+        if (job.error == null && job.mesh.loading) {
+            job.mesh.adoptBuffers(job.vboId, job.eboId, job.indices);
+            loadedCount++;
+            return;
+        }
+        // Failed, or cleaned up while loading
+        GpuResourceRegistry.release(GpuResourceRegistry.Type.BUFFER, job.vboId);
+        GpuResourceRegistry.release(GpuResourceRegistry.Type.BUFFER, job.eboId);
+        job.mesh.loading = false;
+        if (job.error != null) {
+            failedCount++;
+            System.err.println("Mesh load failed: " + job.error.getMessage());
+        }
+    }
+
+    /**
+     * Stops the threads and destroys the upload context. Meshes still loading stay empty and
+     * stop loading; nothing is adopted any more, so their owners may already be torn down.
+     */
+    public void cleanup() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        List<Runnable> neverStarted = workers.shutdownNow();
+        try {
+            workers.awaitTermination(1, TimeUnit.SECONDS);
+            uploads.add(STOP);
+            uploadThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Runnable task : neverStarted) {
+            discard(((PrepareTask) task).job);
+        }
+        // Prepared after the upload thread stopped
+        Job job;
+        while ((job = uploads.poll()) != null) {
+            if (job != STOP) {
+                if (job.vertices != null) {
+                    MemoryUtil.memFree(job.vertices);
+                    job.vertices = null;
+                }
+                discard(job);
+            }
+        }
+        // Release everything uploaded, finished or not, so no buffer is left behind
+        while ((job = uploaded.poll()) != null) {
+            unsignaled.add(job);
+        }
+        for (Job uploadedJob : unsignaled) {
+            if (uploadedJob.fence != NULL) {
+                glDeleteSync(uploadedJob.fence);
+            }
+            uploadedJob.mesh.loading = false; // Its buffers may still be in flight, so they are only released
+            finish(uploadedJob);
+        }
+        unsignaled.clear();
+        glfwDestroyWindow(context);
+    }
+
+    // A job dropped by cleanup before it had any buffers
+    private void discard(Job job) {
+        pending.decrementAndGet();
+        job.mesh.loading = false;
+    }
+
+    // Meshes submitted but not yet resident
+    public int getPendingCount() { return pending.get(); }
+    public int getLoadedCount() { return loadedCount; }
+    public int getFailedCount() { return failedCount; }
+    // Render thread time spent in the last update()
+    public long getLastUpdateNanos() { return lastUpdateNanos; }
+}
@@ -0,0 +1,235 @@
+package com.half;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MeshSimplifier - reduces the triangle count of an indexed mesh by quadric error edge
+ * collapse (Garland and Heckbert). Every vertex accumulates the plane equations of its
+ * triangles as a quadric; collapsing vertex a onto its neighbour b costs the summed
+ * squared distance of b to the planes of both.
+ *
+ * Vertices only ever move onto existing vertices, so the result is a new index list over
+ * the original vertex data. Open borders, including UV seams where vertices are split,
+ * are locked so the simplified mesh does not crack. Each pass collapses the cheapest
+ * independent edges, rejecting collapses that would flip a triangle, until the target
+ * is reached or no edge is cheap enough.
+ */
+public final class MeshSimplifier {
+    private static final int MAX_PASSES = 64;
+
+    private MeshSimplifier() {}
+
+    /**
+     * @param stride floats per vertex; positions are the first three
+     * @param targetIndexCount index count to stop at
+     * @param maxError largest allowed deviation, relative to the mesh's bounding box diagonal
+     * @return simplified indices over the same vertices
+     */
+    public static int[] simplify(float[] vertices, int stride, int[] indices, int targetIndexCount, float maxError) {
+        int vertexCount = vertices.length / stride;
+        if (indices.length % 3 != 0) {
+            throw new IllegalArgumentException("Index count is not a multiple of 3: " + indices.length);
+        }
+        int[] result = indices.clone();
+        int indexCount = result.length;
+        float limit = maxError * diagonal(vertices, stride);
+        float maxCost = limit * limit;
+
+        boolean[] locked = findBorderVertices(result, vertexCount);
+        double[] quadrics = new double[vertexCount * 10];
+        boolean[] touched = new boolean[vertexCount];
+        int[] remap = new int[vertexCount];
+
+        for (int pass = 0; pass < MAX_PASSES && indexCount > targetIndexCount; pass++) {
+            computeQuadrics(vertices, stride, result, indexCount, quadrics);
+            int[] adjacencyStart = new int[vertexCount + 1];
+            int[] adjacency = buildAdjacency(result, indexCount, vertexCount, adjacencyStart);
+
+            // Candidate collapses a -> b for every triangle edge, sorted by cost
+            long[] candidates = new long[indexCount * 2];
+            int[] candidateFrom = new int[indexCount * 2];
+            int[] candidateTo = new int[indexCount * 2];
+            int candidateCount = 0;
+            for (int i = 0; i < indexCount; i++) {
+                int a = result[i];
+                int b = result[i - i % 3 + (i + 1) % 3];
+                for (int k = 0; k < 2; k++) {
+                    int from = k == 0 ? a : b;
+                    int to = k == 0 ? b : a;
+                    if (locked[from] || from == to) continue;
+                    float cost = (float) (evaluate(quadrics, from, vertices, to * stride) + evaluate(quadrics, to, vertices, to * stride));
+                    if (cost > maxCost) continue;
+                    candidateFrom[candidateCount] = from;
+                    candidateTo[candidateCount] = to;
+                    // Non-negative floats sort like their bit patterns
+                    candidates[candidateCount] = ((long) Float.floatToIntBits(Math.max(cost, 0.0f)) << 32) | candidateCount;
+                    candidateCount++;
+                }
+            }
+            Arrays.sort(candidates, 0, candidateCount);
+
+            for (int v = 0; v < vertexCount; v++) {
+                remap[v] = v;
+            }
+            Arrays.fill(touched, false);
+            int removedIndices = 0;
+            int collapses = 0;
+            for (int c = 0; c < candidateCount && indexCount - removedIndices > targetIndexCount; c++) {
+                int candidate = (int) candidates[c];
+                int from = candidateFrom[candidate];
+                int to = candidateTo[candidate];
+                if (touched[from] || touched[to] || flips(vertices, stride, result, adjacency, adjacencyStart, from, to)) {
+                    continue;
+                }
+                // Collapsing also dirties the neighbourhood, so later collapses in this pass stay independent
+                for (int a = adjacencyStart[from]; a < adjacencyStart[from + 1]; a++) {
+                    int t = adjacency[a] * 3;
+                    touched[result[t]] = touched[result[t + 1]] = touched[result[t + 2]] = true;
+                    if (result[t] == to || result[t + 1] == to || result[t + 2] == to) {
+                        removedIndices += 3;
+                    }
+                }
+                remap[from] = to;
+                collapses++;
+            }
+            if (collapses == 0) {
+                break;
+            }
+
+            // Apply the collapses and drop the triangles that became degenerate
+            int write = 0;
+            for (int i = 0; i < indexCount; i += 3) {
+                int a = remap[result[i]], b = remap[result[i + 1]], c = remap[result[i + 2]];
+                if (a != b && b != c && a != c) {
+                    result[write++] = a;
+                    result[write++] = b;
+                    result[write++] = c;
+                }
+            }
+            indexCount = write;
+        }
+        return Arrays.copyOf(result, indexCount);
+    }
+
+    // Vertices on an edge used by only one triangle
+    private static boolean[] findBorderVertices(int[] indices, int vertexCount) {
+        boolean[] border = new boolean[vertexCount];
+        Map<Long, Integer> edges = new HashMap<>();
+        for (int i = 0; i < indices.length; i++) {
+            int a = indices[i];
+            int b = indices[i - i % 3 + (i + 1) % 3];
+            long key = ((long) Math.min(a, b) << 32) | Math.max(a, b);
+            edges.merge(key, 1, Integer::sum);
+        }
+        for (Map.Entry<Long, Integer> edge : edges.entrySet()) {
+            if (edge.getValue() == 1) {
+                long key = edge.getKey();
+                border[(int) (key >>> 32)] = true;
+                border[(int) key] = true;
+            }
+        }
+        return border;
+    }
+
+    // Per vertex: the symmetric 4x4 quadric as 10 doubles, summed over its triangles' planes
+    private static void computeQuadrics(float[] vertices, int stride, int[] indices, int indexCount, double[] quadrics) {
+        Arrays.fill(quadrics, 0.0);
+        for (int i = 0; i < indexCount; i += 3) {
+            int p0 = indices[i] * stride, p1 = indices[i + 1] * stride, p2 = indices[i + 2] * stride;
+            double ux = vertices[p1] - vertices[p0], uy = vertices[p1 + 1] - vertices[p0 + 1], uz = vertices[p1 + 2] - vertices[p0 + 2];
+            double vx = vertices[p2] - vertices[p0], vy = vertices[p2 + 1] - vertices[p0 + 1], vz = vertices[p2 + 2] - vertices[p0 + 2];
+            double nx = uy * vz - uz * vy, ny = uz * vx - ux * vz, nz = ux * vy - uy * vx;
+            double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (length == 0.0) continue;
+            // Weighted by area, so large triangles dominate
+            double weight = length * 0.5;
+            nx /= length;
+            ny /= length;
+            nz /= length;
+            double d = -(nx * vertices[p0] + ny * vertices[p0 + 1] + nz * vertices[p0 + 2]);
+            for (int k = 0; k < 3; k++) {
+                int q = indices[i + k] * 10;
+                quadrics[q] += weight * nx * nx;
+                quadrics[q + 1] += weight * nx * ny;
+                quadrics[q + 2] += weight * nx * nz;
+                quadrics[q + 3] += weight * nx * d;
+                quadrics[q + 4] += weight * ny * ny;
+                quadrics[q + 5] += weight * ny * nz;
+                quadrics[q + 6] += weight * ny * d;
+                quadrics[q + 7] += weight * nz * nz;
+                quadrics[q + 8] += weight * nz * d;
+                quadrics[q + 9] += weight * d * d;
+            }
+        }
+    }
+
+    // v^T Q v for the vertex's quadric and the position at offset p
+    private static double evaluate(double[] quadrics, int vertex, float[] vertices, int p) {
+        int q = vertex * 10;
+        double x = vertices[p], y = vertices[p + 1], z = vertices[p + 2];
+        return quadrics[q] * x * x + 2 * quadrics[q + 1] * x * y + 2 * quadrics[q + 2] * x * z + 2 * quadrics[q + 3] * x
+             + quadrics[q + 4] * y * y + 2 * quadrics[q + 5] * y * z + 2 * quadrics[q + 6] * y
+             + quadrics[q + 7] * z * z + 2 * quadrics[q + 8] * z
+             + quadrics[q + 9];
+    }
+
+    private static int[] buildAdjacency(int[] indices, int indexCount, int vertexCount, int[] start) {
+        Arrays.fill(start, 0);
+        for (int i = 0; i < indexCount; i++) {
+            start[indices[i] + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            start[v + 1] += start[v];
+        }
+        int[] fill = Arrays.copyOf(start, vertexCount);
+        int[] adjacency = new int[indexCount];
+        for (int i = 0; i < indexCount; i++) {
+            adjacency[fill[indices[i]]++] = i / 3;
+        }
+        return adjacency;
+    }
+
+    // True if moving from onto to turns any surviving triangle of from around
+    private static boolean flips(float[] vertices, int stride, int[] indices, int[] adjacency, int[] start, int from, int to) {
+        for (int a = start[from]; a < start[from + 1]; a++) {
+            int t = adjacency[a] * 3;
+            int i0 = indices[t], i1 = indices[t + 1], i2 = indices[t + 2];
+            if (i0 == to || i1 == to || i2 == to) {
+                continue; // Collapses to nothing
+            }
+            float[] before = normal(vertices, stride, i0, i1, i2, -1, -1);
+            float[] after = normal(vertices, stride, i0, i1, i2, from, to);
+            if (before[0] * after[0] + before[1] * after[1] + before[2] * after[2] <= 0.0f) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Unnormalized normal of triangle (i0, i1, i2) with vertex from replaced by to
+    private static float[] normal(float[] vertices, int stride, int i0, int i1, int i2, int from, int to) {
+        int p0 = (i0 == from ? to : i0) * stride;
+        int p1 = (i1 == from ? to : i1) * stride;
+        int p2 = (i2 == from ? to : i2) * stride;
+        float ux = vertices[p1] - vertices[p0], uy = vertices[p1 + 1] - vertices[p0 + 1], uz = vertices[p1 + 2] - vertices[p0 + 2];
+        float vx = vertices[p2] - vertices[p0], vy = vertices[p2 + 1] - vertices[p0 + 1], vz = vertices[p2 + 2] - vertices[p0 + 2];
+        return new float[] { uy * vz - uz * vy, uz * vx - ux * vz, ux * vy - uy * vx };
+    }
+
+    private static float diagonal(float[] vertices, int stride) {
+        float minX = Float.POSITIVE_INFINITY, minY = minX, minZ = minX;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = maxX, maxZ = maxX;
+        for (int i = 0; i + 2 < vertices.length; i += stride) {
+            minX = Math.min(minX, vertices[i]);
+            maxX = Math.max(maxX, vertices[i]);
+            minY = Math.min(minY, vertices[i + 1]);
+            maxY = Math.max(maxY, vertices[i + 1]);
+            minZ = Math.min(minZ, vertices[i + 2]);
+            maxZ = Math.max(maxZ, vertices[i + 2]);
+        }
+        float dx = maxX - minX, dy = maxY - minY, dz = maxZ - minZ;
+        return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+}
@@ -2,14 +2,41 @@ package com.half;
 
 /**
  * PerformanceMonitor - tracks and reports performance metrics
+ *
+ * Frame times go into a {@link TimeHistogram}, so reports give percentiles
+ * (p50/p95/p99/max) rather than an average that hides hitches. The time spent in each
+ * {@link Phase} is measured between {@link #begin} and {@link #end}, summed over the
+ * frame (several update ticks add up) and recorded into its own histogram when the
+ * next frame starts. Recording never allocates; only {@link #getReport()} does.
+ * Phases may nest in one another but not in themselves, and all calls must come from
+ * one thread.
  */
 public class PerformanceMonitor {
+    public enum Phase { INPUT, UPDATE, PHYSICS, CULL, RENDER_SUBMIT, SWAP }
+
+    private static final Phase[] PHASES = Phase.values();
+
     private long frameCount;
     private float totalTime;
     private float lastFpsUpdate;
     private int currentFps;
     private float frameTime;
 
+    // Frame and phase timing
+    private final TimeHistogram frameTimes = new TimeHistogram();
+    private final TimeHistogram[] phaseTimes = new TimeHistogram[PHASES.length];
+    private final long[] phaseStart = new long[PHASES.length];
+    private final long[] phaseNanos = new long[PHASES.length]; // Summed over the current frame
+    private final long[] lastPhaseNanos = new long[PHASES.length]; // Of the previous frame
+    private final boolean[] phaseRan = new boolean[PHASES.length];
+    private long lastFrameStart;
+
+    public PerformanceMonitor() {
+        for (int i = 0; i < PHASES.length; i++) {
+            phaseTimes[i] = new TimeHistogram();
+        }
+    }
+
     /**
      * Updates performance metrics
      * @param deltaTime Time since last update in seconds
@@ -18,7 +45,7 @@ public class PerformanceMonitor {
         frameCount++;
         totalTime += deltaTime;
         frameTime = deltaTime;
-        
+
         // Update FPS every second
         if (totalTime - lastFpsUpdate >= 1.0f) {
             currentFps = (int)(frameCount / (totalTime - lastFpsUpdate));
@@ -27,6 +54,49 @@ public class PerformanceMonitor {
         }
     }
 
+    /**
+     * Marks the start of a frame: records the time since the previous call as a frame and
+     * closes the previous frame's phase totals. Call once per frame, first thing.
+     */
+    public void beginFrame() {
+        long now = System.nanoTime();
+        if (lastFrameStart != 0) {
+            long nanos = now - lastFrameStart;
+            frameTimes.record(nanos);
+            update(nanos / 1e9f);
+        }
+        lastFrameStart = now;
+
+        for (int i = 0; i < PHASES.length; i++) {
+            if (phaseRan[i]) {
+                phaseTimes[i].record(phaseNanos[i]);
+            }
+            lastPhaseNanos[i] = phaseNanos[i];
+            phaseNanos[i] = 0;
+            phaseRan[i] = false;
+        }
+    }
+
+    public void begin(Phase phase) {
+        phaseStart[phase.ordinal()] = System.nanoTime();
+    }
+
+    public void end(Phase phase) {
+        int i = phase.ordinal();
+        phaseNanos[i] += System.nanoTime() - phaseStart[i];
+        phaseRan[i] = true;
+    }
+
+    /**
+     * Clears the histograms, e.g. to report each interval on its own.
+     */
+    public void resetHistograms() {
+        frameTimes.reset();
+        for (TimeHistogram histogram : phaseTimes) {
+            histogram.reset();
+        }
+    }
+
     public int getFps() {
         return currentFps;
     }
@@ -34,4 +104,27 @@ public class PerformanceMonitor {
     public float getFrameTime() {
         return frameTime * 1000.0f; // Convert to milliseconds
     }
+
+    public TimeHistogram getFrameTimes() { return frameTimes; }
+    public TimeHistogram getPhaseTimes(Phase phase) { return phaseTimes[phase.ordinal()]; }
+    // Time spent in the phase during the previous frame
+    public long getLastPhaseNanos(Phase phase) { return lastPhaseNanos[phase.ordinal()]; }
+
+    /**
+     * FPS, frame time percentiles in milliseconds, then p50/p99 of every phase that ran.
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder(256);
+        report.append(String.format("FPS: %d | Frame ms: p50 %.2f p95 %.2f p99 %.2f max %.2f (%d frames)",
+            currentFps, frameTimes.getPercentile(50) / 1e6, frameTimes.getPercentile(95) / 1e6,
+            frameTimes.getPercentile(99) / 1e6, frameTimes.getMax() / 1e6, frameTimes.getCount()));
+        for (Phase phase : PHASES) {
+            TimeHistogram histogram = phaseTimes[phase.ordinal()];
+            if (histogram.getCount() > 0) {
+                report.append(String.format("%n  %-13s p50 %.2f p99 %.2f", phase.name().toLowerCase(),
+                    histogram.getPercentile(50) / 1e6, histogram.getPercentile(99) / 1e6));
+            }
+        }
+        return report.toString();
+    }
 }
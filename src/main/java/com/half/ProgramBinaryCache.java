@@ -0,0 +1,197 @@
+package com.half;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL41.*;
+
+/**
+ * ProgramBinaryCache - keeps linked shader programs on disk as driver binaries
+ * (glGetProgramBinary), so later launches load them with glProgramBinary instead of
+ * compiling GLSL.
+ *
+ * Entries are named after a hash of the driver (vendor, renderer, version) and a hash of
+ * the program's sources. A driver update changes the driver hash: the old entries then
+ * never match and are deleted when the cache is opened. A binary the driver still
+ * rejects is deleted and the program compiles from source as usual.
+ * Like all GL work, the cache must only be used from the render thread.
+ */
+public class ProgramBinaryCache {
+    private static final int MAGIC = 0x48504243; // "HPBC"
+    private static final int HEADER_BYTES = 3 * Integer.BYTES; // Magic, binary format, length
+    private static final String SUFFIX = ".bin";
+
+    private final Path directory;
+    private final String driverHash;
+
+    // Statistics
+    private int hits;
+    private int misses;
+    private int rejected; // Binaries the driver refused to load
+    private int stores;
+
+    /**
+     * Opens the cache in directory, creating it if needed, and deletes entries of other drivers.
+     * Requires a current GL context.
+     */
+    public ProgramBinaryCache(Path directory) {
+        this.directory = directory;
+        this.driverHash = hash(glGetString(GL_VENDOR) + "\n" + glGetString(GL_RENDERER) + "\n" + glGetString(GL_VERSION))
+            .substring(0, 16);
+        try {
+            Files.createDirectories(directory);
+            pruneOtherDrivers();
+        } catch (IOException e) {
+            System.err.println("Warning: shader cache unavailable at " + directory + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * True if the context can save and load program binaries in at least one format.
+     */
+    public static boolean isSupported() {
+        GLCapabilities caps = GL.getCapabilities();
+        return (caps.OpenGL41 || caps.GL_ARB_get_program_binary)
+            && glGetInteger(GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+    }
+
+    private void pruneOtherDrivers() throws IOException {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path entry : entries) {
+                if (!entry.getFileName().toString().startsWith(driverHash + "-")) {
+                    Files.deleteIfExists(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads the cached binary for the given sources into programId.
+     * @return true if the program is now linked; false means compile and link it from source
+     */
+    boolean load(int programId, String... sources) {
+        Path entry = entryFor(sources);
+        if (!Files.isRegularFile(entry)) {
+            misses++;
+            return false;
+        }
+        ByteBuffer binary = null;
+        try {
+            byte[] data = Files.readAllBytes(entry);
+            ByteBuffer header = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+            if (data.length < HEADER_BYTES || header.getInt() != MAGIC) {
+                return reject(entry);
+            }
+            int format = header.getInt();
+            int length = header.getInt();
+            if (length != data.length - HEADER_BYTES) {
+                return reject(entry);
+            }
+            binary = MemoryUtil.memAlloc(length);
+            binary.put(data, HEADER_BYTES, length).flip();
+            glProgramBinary(programId, format, binary);
+            if (glGetProgrami(programId, GL_LINK_STATUS) == 0) {
+                return reject(entry);
+            }
+            hits++;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Warning: could not read shader cache entry " + entry + ": " + e.getMessage());
+            misses++;
+            return false;
+        } finally {
+            if (binary != null) {
+                MemoryUtil.memFree(binary);
+            }
+        }
+    }
+
+    private boolean reject(Path entry) {
+        rejected++;
+        misses++;
+        try {
+            Files.deleteIfExists(entry);
+        } catch (IOException e) {
+            System.err.println("Warning: could not delete shader cache entry " + entry + ": " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Saves the binary of a freshly linked program. The program should have been linked with
+     * GL_PROGRAM_BINARY_RETRIEVABLE_HINT set, or some drivers return nothing.
+     */
+    void store(int programId, String... sources) {
+        int length = glGetProgrami(programId, GL_PROGRAM_BINARY_LENGTH);
+        if (length <= 0) {
+            return;
+        }
+        ByteBuffer binary = MemoryUtil.memAlloc(length);
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer written = stack.mallocInt(1);
+            IntBuffer format = stack.mallocInt(1);
+            glGetProgramBinary(programId, written, format, binary);
+
+            byte[] data = new byte[HEADER_BYTES + written.get(0)];
+            ByteBuffer out = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+            out.putInt(MAGIC).putInt(format.get(0)).putInt(written.get(0));
+            binary.limit(written.get(0));
+            out.put(binary);
+
+            // Write to a temporary file first so a crash never leaves a truncated entry
+            Path entry = entryFor(sources);
+            Path temporary = directory.resolve(entry.getFileName() + ".tmp");
+            Files.write(temporary, data);
+            Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            stores++;
+        } catch (IOException e) {
+            System.err.println("Warning: could not write shader cache entry: " + e.getMessage());
+        } finally {
+            MemoryUtil.memFree(binary);
+        }
+    }
+
+    private Path entryFor(String... sources) {
+        StringBuilder key = new StringBuilder();
+        for (String source : sources) {
+            // Length prefixes keep "ab" + "c" apart from "a" + "bc"
+            key.append(source.length()).append(':').append(source);
+        }
+        return directory.resolve(driverHash + "-" + hash(key.toString()) + SUFFIX);
+    }
+
+    private static String hash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public Path getDirectory() { return directory; }
+    public int getHits() { return hits; }
+    public int getMisses() { return misses; }
+    public int getRejected() { return rejected; }
+    public int getStores() { return stores; }
+}
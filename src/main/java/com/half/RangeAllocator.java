@@ -0,0 +1,140 @@
+package com.half;
+
+import java.util.Arrays;
+
+/**
+ * RangeAllocator - hands out ranges of a linear address space, e.g. vertex or index
+ * slots of a shared GPU buffer. Free ranges are kept sorted by offset in two parallel
+ * arrays; allocation is best fit, and freed ranges merge with their neighbours so the
+ * space does not fragment into slivers. All sizes are in caller-defined units.
+ */
+public class RangeAllocator {
+    private int capacity;
+    private int[] freeOffsets = new int[16];
+    private int[] freeSizes = new int[16];
+    private int freeCount;
+    private int used;
+
+    public RangeAllocator(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+        }
+        this.capacity = capacity;
+        if (capacity > 0) {
+            freeOffsets[0] = 0;
+            freeSizes[0] = capacity;
+            freeCount = 1;
+        }
+    }
+
+    /**
+     * @return offset of the allocated range, or -1 if no free range is large enough
+     */
+    public int allocate(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Size must be positive: " + size);
+        }
+        int best = -1;
+        for (int i = 0; i < freeCount; i++) {
+            int free = freeSizes[i];
+            if (free >= size && (best < 0 || free < freeSizes[best])) {
+                best = i;
+                if (free == size) break;
+            }
+        }
+        if (best < 0) {
+            return -1;
+        }
+        int offset = freeOffsets[best];
+        if (freeSizes[best] == size) {
+            removeFree(best);
+        } else {
+            freeOffsets[best] += size;
+            freeSizes[best] -= size;
+        }
+        used += size;
+        return offset;
+    }
+
+    /**
+     * Returns a range obtained from {@link #allocate(int)}.
+     */
+    public void free(int offset, int size) {
+        if (size < 1 || offset < 0 || offset + size > capacity) {
+            throw new IllegalArgumentException("Invalid range " + offset + "+" + size);
+        }
+        // First free range after the freed one
+        int index = Arrays.binarySearch(freeOffsets, 0, freeCount, offset);
+        if (index >= 0) {
+            throw new IllegalStateException("Range " + offset + "+" + size + " is already free");
+        }
+        index = -index - 1;
+
+        if ((index > 0 && freeOffsets[index - 1] + freeSizes[index - 1] > offset)
+                || (index < freeCount && offset + size > freeOffsets[index])) {
+            throw new IllegalStateException("Range " + offset + "+" + size + " overlaps a free range");
+        }
+        boolean mergePrev = index > 0 && freeOffsets[index - 1] + freeSizes[index - 1] == offset;
+        boolean mergeNext = index < freeCount && offset + size == freeOffsets[index];
+
+        if (mergePrev && mergeNext) {
+            freeSizes[index - 1] += size + freeSizes[index];
+            removeFree(index);
+        } else if (mergePrev) {
+            freeSizes[index - 1] += size;
+        } else if (mergeNext) {
+            freeOffsets[index] = offset;
+            freeSizes[index] += size;
+        } else {
+            insertFree(index, offset, size);
+        }
+        used -= size;
+    }
+
+    /**
+     * Extends the address space; the new space is free.
+     */
+    public void grow(int newCapacity) {
+        if (newCapacity <= capacity) {
+            return;
+        }
+        int added = newCapacity - capacity;
+        if (freeCount > 0 && freeOffsets[freeCount - 1] + freeSizes[freeCount - 1] == capacity) {
+            freeSizes[freeCount - 1] += added;
+        } else {
+            insertFree(freeCount, capacity, added);
+        }
+        capacity = newCapacity;
+    }
+
+    private void insertFree(int index, int offset, int size) {
+        if (freeCount == freeOffsets.length) {
+            freeOffsets = Arrays.copyOf(freeOffsets, freeCount * 2);
+            freeSizes = Arrays.copyOf(freeSizes, freeCount * 2);
+        }
+        System.arraycopy(freeOffsets, index, freeOffsets, index + 1, freeCount - index);
+        System.arraycopy(freeSizes, index, freeSizes, index + 1, freeCount - index);
+        freeOffsets[index] = offset;
+        freeSizes[index] = size;
+        freeCount++;
+    }
+
+    private void removeFree(int index) {
+        System.arraycopy(freeOffsets, index + 1, freeOffsets, index, freeCount - index - 1);
+        System.arraycopy(freeSizes, index + 1, freeSizes, index, freeCount - index - 1);
+        freeCount--;
+    }
+
+    public int getCapacity() { return capacity; }
+    public int getUsed() { return used; }
+    public int getFreeRangeCount() { return freeCount; }
+
+    // Size of the largest range that can currently be allocated
+    public int getLargestFree() {
+        int largest = 0;
+        for (int i = 0; i < freeCount; i++) {
+            largest = Math.max(largest, freeSizes[i]);
+        }
+        return largest;
+    }
+}
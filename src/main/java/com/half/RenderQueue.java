@@ -0,0 +1,164 @@
+package com.half;
+
+import java.util.Arrays;
+
+/**
+ * RenderQueue - per-frame list of draw items ordered by packed 64-bit sort keys.
+ * Keys are sorted with an LSD radix sort (8 passes of 8 bits, skipping digits that are
+ * the same for every key), which is linear in the item count.
+ *
+ * Key layout, most significant bits first:
+ *   opaque:      layer(2) | shader(10) | mesh(20) | depth(32)            front to back
+ *   transparent: layer(2) | inverted depth(32) | shader(10) | mesh(20)   back to front
+ * Opaque items are grouped by state first and sorted front to back within a group, so
+ * each group can be drawn as one batch with early depth rejection. Transparent items
+ * must blend back to front, so depth wins over state for them.
+ * Shader and mesh fields are dense indices assigned per frame by the caller, not GL or
+ * mesh ids, which grow without bound and would collide once masked.
+ */
+public class RenderQueue {
+    public static final int LAYER_OPAQUE = 0;
+    public static final int LAYER_TRANSPARENT = 1;
+
+    private static final int SHADER_BITS = 10;
+    private static final int MESH_BITS = 20;
+    private static final long SHADER_MASK = (1L << SHADER_BITS) - 1;
+    private static final long MESH_MASK = (1L << MESH_BITS) - 1;
+    private static final long DEPTH_MASK = 0xFFFFFFFFL;
+    public static final int MAX_SHADERS = 1 << SHADER_BITS;
+    public static final int MAX_MESHES = 1 << MESH_BITS;
+
+    private long[] keys;
+    private long[] keysScratch;
+    private int[] items;
+    private int[] itemsScratch;
+    private int size;
+    private final int[] histograms = new int[8 * 256];
+
+    public RenderQueue(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        keys = new long[capacity];
+        keysScratch = new long[capacity];
+        items = new int[capacity];
+        itemsScratch = new int[capacity];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Appends an item, typically an index into the caller's object list.
+     */
+    public void add(long key, int item) {
+        if (size == keys.length) {
+            int capacity = size * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            items = Arrays.copyOf(items, capacity);
+            keysScratch = new long[capacity];
+            itemsScratch = new int[capacity];
+        }
+        keys[size] = key;
+        items[size] = item;
+        size++;
+    }
+
+    /**
+     * Sorts the items by key as unsigned 64-bit values. The sort is stable.
+     */
+    public void sort() {
+        int n = size;
+        if (n < 2) {
+            return;
+        }
+
+        // One pass builds the histograms of all eight digits
+        Arrays.fill(histograms, 0);
+        for (int i = 0; i < n; i++) {
+            long key = keys[i];
+            for (int digit = 0; digit < 8; digit++) {
+                histograms[(digit << 8) | (int) ((key >>> (digit * 8)) & 0xFF)]++;
+            }
+        }
+
+        long[] srcKeys = keys, dstKeys = keysScratch;
+        int[] srcItems = items, dstItems = itemsScratch;
+        for (int digit = 0; digit < 8; digit++) {
+            int base = digit << 8;
+            int shift = digit * 8;
+
+            // A digit shared by all keys does not change the order
+            if (histograms[base | (int) ((srcKeys[0] >>> shift) & 0xFF)] == n) {
+                continue;
+            }
+
+            int offset = 0;
+            for (int bucket = 0; bucket < 256; bucket++) {
+                int count = histograms[base | bucket];
+                histograms[base | bucket] = offset;
+                offset += count;
+            }
+            for (int i = 0; i < n; i++) {
+                long key = srcKeys[i];
+                int position = histograms[base | (int) ((key >>> shift) & 0xFF)]++;
+                dstKeys[position] = key;
+                dstItems[position] = srcItems[i];
+            }
+
+            long[] swapKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = swapKeys;
+            int[] swapItems = srcItems;
+            srcItems = dstItems;
+            dstItems = swapItems;
+        }
+
+        keys = srcKeys;
+        keysScratch = dstKeys;
+        items = srcItems;
+        itemsScratch = dstItems;
+    }
+
+    public int size() { return size; }
+    public long getKey(int index) { return keys[index]; }
+    public int getItem(int index) { return items[index]; }
+
+    /**
+     * @param shaderIndex dense index of the shader in this queue, below {@link #MAX_SHADERS}
+     * @param meshIndex dense index of the mesh in this queue, below {@link #MAX_MESHES}
+     * @param depth view-space distance, clamped to be non-negative
+     */
+    public static long opaqueKey(int shaderIndex, int meshIndex, float depth) {
+        return ((long) LAYER_OPAQUE << 62)
+            | ((shaderIndex & SHADER_MASK) << 52)
+            | ((meshIndex & MESH_MASK) << 32)
+            | depthBits(depth);
+    }
+
+    public static long transparentKey(int shaderIndex, int meshIndex, float depth) {
+        return ((long) LAYER_TRANSPARENT << 62)
+            | ((~depthBits(depth) & DEPTH_MASK) << 30)
+            | ((shaderIndex & SHADER_MASK) << 20)
+            | (meshIndex & MESH_MASK);
+    }
+
+    // Non-negative floats order the same as their bit patterns read as unsigned ints
+    private static long depthBits(float depth) {
+        return Float.floatToRawIntBits(Math.max(depth, 0.0f)) & DEPTH_MASK;
+    }
+
+    public static int getLayer(long key) {
+        return (int) (key >>> 62);
+    }
+
+    /**
+     * Returns the part of the key that selects GL state (layer, shader and mesh);
+     * consecutive items with equal state keys can be drawn as one batch.
+     */
+    public static long getStateKey(long key) {
+        if (getLayer(key) == LAYER_OPAQUE) {
+            return key & ~DEPTH_MASK;
+        }
+        return key & ((3L << 62) | (SHADER_MASK << 20) | MESH_MASK);
+    }
+}
@@ -1,7 +1,9 @@
 package com.half;
 
+import com.half.gameobjects.Pyramid;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
+import org.joml.Vector3fc;
 import org.joml.Vector4f;
 import java.util.ArrayList;
 import java.util.List;
@@ -10,34 +12,78 @@ import java.util.Random;
 import static org.lwjgl.opengl.GL11.*;
 
 public class Scene {
+    private static final float SPATIAL_MARGIN = 0.5f; // Fattening of spatial index leaves
+    private static final int UPDATE_GRAIN = 1024; // Objects per parallel update chunk
+    private static final int POOL_VERTICES = 1 << 16; // Initial geometry pool size, grows on demand
+    private static final int POOL_INDICES = 3 << 16;
+    private static final VertexFormat VERTEX_FORMAT = VertexFormat.SNORM16_OCT16; // 12 bytes per vertex
+
     private List<GameObject> gameObjects;
     private List<GameObject> toAdd;
     private List<GameObject> toRemove;
+    private TransformStore transforms;
     private Shader shader;
+    private UniformHandle projectionMatrixUniform;
+    private UniformHandle viewMatrixUniform;
+    private UniformHandle viewPosUniform;
+    private UniformHandle timeUniform;
     private Camera camera;
-    private Matrix4f modelMatrix;
+    private InstancedRenderer renderer;
+    private GeometryPool geometryPool;
+    private MeshLoader meshLoader;
     private Matrix4f viewMatrix;
     private Matrix4f projectionMatrix;
+    private Matrix4f viewProjectionMatrix;
+    private Frustum frustum;
+    private boolean frustumCullingEnabled = true;
+    private boolean lodEnabled = true;
+    private int lodSwitches;
+    private int visibleCount;
+    private int culledCount;
+    private DynamicAabbTree<GameObject> spatialIndex;
+    private SweepAndPrune broadphase;
+    private JobSystem jobs;
+    private final PerformanceMonitor monitor;
+    private boolean parallelUpdateEnabled = true;
+    private final List<GameObject> queryScratch = new ArrayList<>();
     private float time = 0;
     private Random random = new Random();
     private int windowWidth;
     private int windowHeight;
 
-    public Scene(int windowWidth, int windowHeight) {
+    /**
+     * @param monitor the game loop's monitor, which receives the physics, cull and render
+     *                submit phases; the loop owns the frame and calls beginFrame()
+     */
+    public Scene(int windowWidth, int windowHeight, PerformanceMonitor monitor) {
+        if (monitor == null) {
+            throw new IllegalArgumentException("Monitor must not be null");
+        }
+        this.monitor = monitor;
         this.windowWidth = windowWidth;
         this.windowHeight = windowHeight;
         
         gameObjects = new ArrayList<>();
         toAdd = new ArrayList<>();
         toRemove = new ArrayList<>();
+        transforms = new TransformStore(1024);
         camera = new Camera((float)windowWidth / windowHeight);
         camera.setPosition(new Vector3f(0, 0, 5));
         
-        modelMatrix = new Matrix4f();
         viewMatrix = new Matrix4f();
         projectionMatrix = new Matrix4f();
+        viewProjectionMatrix = new Matrix4f();
+        frustum = new Frustum();
+        spatialIndex = new DynamicAabbTree<>(SPATIAL_MARGIN);
+        broadphase = new SweepAndPrune();
+        jobs = new JobSystem();
 
         initializeShader();
+        renderer = new InstancedRenderer();
+
+        // Static meshes created from here on share the pool's buffers
+        geometryPool = new GeometryPool(POOL_VERTICES, POOL_INDICES, VERTEX_FORMAT);
+        Mesh.setGeometryPool(geometryPool);
         createRandomObjects(50); // Create 50 random objects
     }
     
@@ -91,30 +137,51 @@ public class Scene {
         
         // Vertex shader with lighting
         String vertexShaderSource = "#version 330 core\n" +
+            VERTEX_FORMAT.getShaderDefines() +
             "layout (location = 0) in vec3 position;\n" +
+            "#ifdef OCTAHEDRAL_NORMALS\n" +
+            "layout (location = 1) in vec2 packedNormal;\n" +
+            "\n" +
+            "vec3 decodeNormal() {\n" +
+            "    vec3 n = vec3(packedNormal, 1.0 - abs(packedNormal.x) - abs(packedNormal.y));\n" +
+            "    float t = max(-n.z, 0.0);\n" +
+            "    n.x += n.x >= 0.0 ? -t : t;\n" +
+            "    n.y += n.y >= 0.0 ? -t : t;\n" +
+            "    return n;\n" +
+            "}\n" +
+            "#else\n" +
             "layout (location = 1) in vec3 normal;\n" +
             "\n" +
+            "vec3 decodeNormal() {\n" +
+            "    return normal;\n" +
+            "}\n" +
+            "#endif\n" +
+            "layout (location = 2) in mat4 instanceModel;\n" +
+            "layout (location = 6) in vec4 instanceColor;\n" +
+            "layout (location = 7) in mat3 instanceNormal;\n" +
+            "\n" +
             "uniform mat4 projectionMatrix;\n" +
             "uniform mat4 viewMatrix;\n" +
-            "uniform mat4 modelMatrix;\n" +
             "\n" +
             "out vec3 FragPos;\n" +
             "out vec3 Normal;\n" +
+            "out vec4 Color;\n" +
             "\n" +
             "void main() {\n" +
-            "    FragPos = vec3(modelMatrix * vec4(position, 1.0));\n" +
-            "    Normal = mat3(transpose(inverse(modelMatrix))) * normal;\n" +
-            "    gl_Position = projectionMatrix * viewMatrix * modelMatrix * vec4(position, 1.0);\n" +
+            "    FragPos = vec3(instanceModel * vec4(position, 1.0));\n" +
+            "    Normal = instanceNormal * decodeNormal();\n" +
+            "    Color = instanceColor;\n" +
+            "    gl_Position = projectionMatrix * viewMatrix * vec4(FragPos, 1.0);\n" +
             "}";
                 
         // Fragment shader with Phong lighting
         String fragmentShaderSource = "#version 330 core\n" +
             "in vec3 FragPos;\n" +
             "in vec3 Normal;\n" +
+            "in vec4 Color;\n" +
             "out vec4 FragColor;\n" +
             "\n" +
             "uniform vec3 viewPos;\n" +
-            "uniform vec3 objectColor;\n" +
             "uniform float time;\n" +
             "\n" +
             "void main() {\n" +
@@ -140,26 +207,42 @@ public class Scene {
             "    vec3 specular = specularStrength * spec * lightColor;\n" +
             "    \n" +
             "    // Combine results\n" +
-            "    vec3 result = (ambient + diffuse + specular) * objectColor;\n" +
-            "    FragColor = vec4(result, 1.0);\n" +
+            "    vec3 result = (ambient + diffuse + specular) * Color.rgb;\n" +
+            "    FragColor = vec4(result, Color.a);\n" +
             "}";
         
         shader.createVertexShader(vertexShaderSource);
         shader.createFragmentShader(fragmentShaderSource);
         shader.link();
 
-        // Create uniforms
-        shader.createUniform("projectionMatrix");
-        shader.createUniform("viewPos");
-        shader.createUniform("time");
+        // Resolve uniform handles once
+        projectionMatrixUniform = shader.getUniform("projectionMatrix");
+        viewMatrixUniform = shader.getUniform("viewMatrix");
+        viewPosUniform = shader.getUniform("viewPos");
+        timeUniform = shader.getUniform("time");
     }
 
+    /**
+     * Queues an object for the next update. During a parallel update only the list insert
+     * is deferred: the object itself must also be built on the update thread, as creating
+     * it touches MeshCache and GL, so spawn with
+     * {@code JobSystem.defer(() -> scene.addGameObject(new ...))}. Building it on a worker
+     * throws IllegalStateException from {@link GLState#checkRenderThread}.
+     */
     public void addGameObject(GameObject gameObject) {
-        toAdd.add(gameObject);
+        if (JobSystem.inJob()) {
+            JobSystem.defer(() -> toAdd.add(gameObject));
+        } else {
+            toAdd.add(gameObject);
+        }
     }
 
     public void removeGameObject(GameObject gameObject) {
-        toRemove.add(gameObject);
+        if (JobSystem.inJob()) {
+            JobSystem.defer(() -> toRemove.add(gameObject));
+        } else {
+            toRemove.add(gameObject);
+        }
     }
 
     public GameObject findGameObject(String name) {
@@ -174,10 +257,18 @@ public class Scene {
         return new ArrayList<>();
     }
 
+    /**
+     * Advances the simulation by one tick. Meant to be called with a fixed deltaTime;
+     * the state before the tick is kept so render(alpha) can interpolate.
+     */
     public void update(float deltaTime) {
+        transforms.snapshot();
+
         // Add new objects
         for (GameObject obj : toAdd) {
             gameObjects.add(obj);
+            obj.getTransform().attach(transforms);
+            broadphase.add(obj);
             obj.start();
         }
         toAdd.clear();
@@ -185,62 +276,259 @@ public class Scene {
         // Remove objects
         for (GameObject obj : toRemove) {
             gameObjects.remove(obj);
+            if (obj.proxyId != -1) {
+                spatialIndex.destroyProxy(obj.proxyId);
+                obj.proxyId = -1;
+            }
+            broadphase.remove(obj);
+            obj.getTransform().detach();
             obj.cleanup();
         }
         toRemove.clear();
 
-        // Update all active objects
-        for (GameObject obj : gameObjects) {
+        // Update all active objects in parallel chunks; each update only writes its own
+        // transform slot, anything shared goes through JobSystem.defer
+        if (parallelUpdateEnabled) {
+            jobs.parallelFor(gameObjects.size(), UPDATE_GRAIN, (from, to) -> updateRange(from, to, deltaTime));
+        } else {
+            updateRange(0, gameObjects.size(), deltaTime);
+        }
+
+        // Apply velocities in one linear pass over the packed transform data
+        monitor.begin(PerformanceMonitor.Phase.PHYSICS);
+        transforms.integrate(deltaTime);
+
+        // Collide physics objects at their new positions
+        broadphase.update();
+        monitor.end(PerformanceMonitor.Phase.PHYSICS);
+
+        // Bring world bounds up to date so spatial queries see this frame's positions.
+        // render() repeats the pass, which is free when nothing changed in between.
+        transforms.updateMatrices();
+        syncSpatialIndex();
+    }
+
+    private void updateRange(int from, int to, float deltaTime) {
+        for (int i = from; i < to; i++) {
+            GameObject obj = gameObjects.get(i);
             if (obj.isActive()) {
                 obj.update(deltaTime);
             }
         }
+    }
+
+    // Moves proxies of objects whose world bounds changed; most stay inside their fat box
+    private void syncSpatialIndex() {
+        float[] worldBounds = transforms.worldBounds;
+        int[] worldStamp = transforms.worldStamp;
+        for (GameObject obj : gameObjects) {
+            int slot = obj.getTransform().getSlot();
+            int stamp = worldStamp[slot];
+            if (obj.proxyId != -1 && stamp == obj.proxyStamp) {
+                continue;
+            }
+            int o = slot * 6;
+            float cx = worldBounds[o], cy = worldBounds[o + 1], cz = worldBounds[o + 2];
+            float ex = worldBounds[o + 3], ey = worldBounds[o + 4], ez = worldBounds[o + 5];
+            if (obj.proxyId == -1) {
+                obj.proxyId = spatialIndex.createProxy(cx - ex, cy - ey, cz - ez, cx + ex, cy + ey, cz + ez, obj);
+            } else {
+                spatialIndex.moveProxy(obj.proxyId, cx - ex, cy - ey, cz - ez, cx + ex, cy + ey, cz + ez);
+            }
+            obj.proxyStamp = stamp;
+        }
+    }
+
+    /**
+     * Collects active objects whose world bounds intersect the frustum.
+     */
+    public List<GameObject> queryFrustum(Frustum query, List<GameObject> results) {
+        queryScratch.clear();
+        spatialIndex.queryFrustum(query, queryScratch);
+        for (GameObject obj : queryScratch) {
+            int o = obj.getTransform().getSlot() * 6;
+            float[] b = transforms.worldBounds;
+            if (obj.isActive() && query.testAabb(b[o], b[o + 1], b[o + 2], b[o + 3], b[o + 4], b[o + 5])) {
+                results.add(obj);
+            }
+        }
+        queryScratch.clear();
+        return results;
+    }
+
+    /**
+     * Collects active objects whose world bounds overlap the sphere.
+     */
+    public List<GameObject> querySphere(Vector3fc center, float radius, List<GameObject> results) {
+        queryScratch.clear();
+        spatialIndex.querySphere(center.x(), center.y(), center.z(), radius, queryScratch);
+        for (GameObject obj : queryScratch) {
+            int o = obj.getTransform().getSlot() * 6;
+            float[] b = transforms.worldBounds;
+            float dx = Math.max(Math.abs(center.x() - b[o]) - b[o + 3], 0);
+            float dy = Math.max(Math.abs(center.y() - b[o + 1]) - b[o + 4], 0);
+            float dz = Math.max(Math.abs(center.z() - b[o + 2]) - b[o + 5], 0);
+            if (obj.isActive() && dx * dx + dy * dy + dz * dz <= radius * radius) {
+                results.add(obj);
+            }
+        }
+        queryScratch.clear();
+        return results;
+    }
+
+    /**
+     * Collects active objects whose world bounds overlap the box given by its corners.
+     */
+    public List<GameObject> queryBox(Vector3fc min, Vector3fc max, List<GameObject> results) {
+        queryScratch.clear();
+        spatialIndex.queryAabb(min.x(), min.y(), min.z(), max.x(), max.y(), max.z(), queryScratch);
+        for (GameObject obj : queryScratch) {
+            int o = obj.getTransform().getSlot() * 6;
+            float[] b = transforms.worldBounds;
+            if (obj.isActive() &&
+                b[o] - b[o + 3] <= max.x() && b[o] + b[o + 3] >= min.x() &&
+                b[o + 1] - b[o + 4] <= max.y() && b[o + 1] + b[o + 4] >= min.y() &&
+                b[o + 2] - b[o + 5] <= max.z() && b[o + 2] + b[o + 5] >= min.z()) {
+                results.add(obj);
+            }
+        }
+        queryScratch.clear();
+        return results;
+    }
+
+    /**
+     * Finds the closest active object whose world bounds are hit by the ray.
+     * @param direction ray direction, distances are measured in units of its length
+     * @return the hit object, or null if nothing is hit within maxDistance
+     */
+    public GameObject raycast(Vector3fc origin, Vector3fc direction, float maxDistance) {
+        float ox = origin.x(), oy = origin.y(), oz = origin.z();
+        float invX = 1.0f / direction.x(), invY = 1.0f / direction.y(), invZ = 1.0f / direction.z();
+
+        queryScratch.clear();
+        spatialIndex.raycast(ox, oy, oz, direction.x(), direction.y(), direction.z(), maxDistance, queryScratch);
+
+        GameObject closest = null;
+        float closestDistance = maxDistance;
+        float[] b = transforms.worldBounds;
+        for (GameObject obj : queryScratch) {
+            if (!obj.isActive()) continue;
+            int o = obj.getTransform().getSlot() * 6;
+
+            // Slab test against the tight bounds
+            float t1 = (b[o] - b[o + 3] - ox) * invX, t2 = (b[o] + b[o + 3] - ox) * invX;
+            float tMin = Math.min(t1, t2), tMax = Math.max(t1, t2);
+            t1 = (b[o + 1] - b[o + 4] - oy) * invY;
+            t2 = (b[o + 1] + b[o + 4] - oy) * invY;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+            t1 = (b[o + 2] - b[o + 5] - oz) * invZ;
+            t2 = (b[o + 2] + b[o + 5] - oz) * invZ;
+            tMin = Math.max(Math.max(tMin, Math.min(t1, t2)), 0);
+            tMax = Math.min(tMax, Math.max(t1, t2));
 
+            if (tMax >= tMin && tMin <= closestDistance) {
+                closest = obj;
+                closestDistance = tMin;
+            }
+        }
+        queryScratch.clear();
+        return closest;
     }
     
     public void render() {
+        render(1.0f);
+    }
+
+    /**
+     * Renders the scene interpolated between the previous and the current tick.
+     * Culling uses the current tick's bounds.
+     * @param alpha fraction of a tick elapsed since the last update, in [0, 1]
+     */
+    public void render(float alpha) {
         // Clear the screen
         glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
         
+        GLState.resetStats();
+        MeshBudget.beginFrame();
+
+        // Meshes finished by the loader become resident before anything is drawn
+        if (meshLoader != null) {
+            meshLoader.update();
+        }
+
         // Enable depth testing
-        glEnable(GL_DEPTH_TEST);
+        GLState.enable(GL_DEPTH_TEST);
         
         // Update view and projection matrices
         viewMatrix.set(camera.getViewMatrix());
         projectionMatrix.set(camera.getProjectionMatrix());
         
+        // Rebuild matrices of transforms that changed and propagate them down the hierarchy
+        monitor.begin(PerformanceMonitor.Phase.CULL);
+        transforms.updateMatrices();
+
+        // Flag objects outside the view frustum so they are skipped before any upload or draw
+        if (frustumCullingEnabled) {
+            projectionMatrix.mul(viewMatrix, viewProjectionMatrix);
+            frustum.update(viewProjectionMatrix);
+            visibleCount = frustum.cull(transforms);
+            culledCount = frustum.getCulledCount();
+        }
+
+        if (lodEnabled) {
+            selectLods();
+        }
+        monitor.end(PerformanceMonitor.Phase.CULL);
+        
         // Use our shader program
         shader.bind();
         
         // Set shader uniforms
-        shader.setUniform("viewMatrix", viewMatrix);
-        shader.setUniform("projectionMatrix", projectionMatrix);
-        shader.setUniform("viewPos", camera.getPosition());
-        shader.setUniform("time", time);
+        viewMatrixUniform.set(viewMatrix);
+        projectionMatrixUniform.set(projectionMatrix);
+        viewPosUniform.set(camera.getPosition());
+        timeUniform.set(time);
         
-        // Render all game objects
-        for (GameObject obj : gameObjects) {
-            // Skip if object is not visible
-            if (!obj.isVisible()) continue;
-            
-            // Update model matrix for this object
-            modelMatrix.identity()
-                .translate(obj.getTransform().getPosition())
-                .rotateX((float)Math.toRadians(obj.getTransform().getRotation().x))
-                .rotateY((float)Math.toRadians(obj.getTransform().getRotation().y))
-                .rotateZ((float)Math.toRadians(obj.getTransform().getRotation().z))
-                .scale(obj.getTransform().getScale());
-            
-            // Set model matrix and object color
-            shader.setUniform("modelMatrix", modelMatrix);
-            shader.setUniform("objectColor", obj.getColor());
-            
-            // Render the object
-            obj.render();
-        }
+        // Render all game objects sorted by state and depth, one instanced draw per run of a mesh
+        monitor.begin(PerformanceMonitor.Phase.RENDER_SUBMIT);
+        renderer.render(gameObjects, viewMatrix, alpha);
+        monitor.end(PerformanceMonitor.Phase.RENDER_SUBMIT);
         
-        // Unbind shader
-        shader.unbind();
+        // The shader stays bound, so the next frame's bind() is elided
+
+        // Give back GPU memory of meshes not drawn lately if over the mesh budget
+        MeshBudget.enforce();
+
+        // Once per frame: delete GL objects released by cleanups the GPU has caught up with
+        GpuResourceRegistry.flush();
+    }
+
+    // Picks each visible object's level of detail from the height its bounds cover on screen
+    private void selectLods() {
+        lodSwitches = 0;
+        // Pixels per world unit at a view depth of 1
+        float pixelScale = projectionMatrix.m11() * windowHeight * 0.5f;
+        float vx = viewMatrix.m02(), vy = viewMatrix.m12(), vz = viewMatrix.m22(), vw = viewMatrix.m32();
+        float[] bounds = transforms.worldBounds;
+        for (int i = 0, n = gameObjects.size(); i < n; i++) {
+            GameObject obj = gameObjects.get(i);
+            Mesh mesh = obj.getMesh();
+            if (mesh == null || mesh.getLodCount() < 2 || !obj.isVisible()) continue;
+
+            int o = obj.getTransform().getSlot() * 6;
+            float ex = bounds[o + 3], ey = bounds[o + 4], ez = bounds[o + 5];
+            float radius = (float) Math.sqrt(ex * ex + ey * ey + ez * ez);
+            float depth = -(vx * bounds[o] + vy * bounds[o + 1] + vz * bounds[o + 2] + vw);
+            // Inside the bounding sphere counts as full detail
+            float screenSize = depth > radius ? 2.0f * radius * pixelScale / depth : Float.MAX_VALUE;
+
+            int level = mesh.selectLod(screenSize, obj.lodLevel);
+            if (level != obj.lodLevel) {
+                obj.lodLevel = level;
+                lodSwitches++;
+            }
+        }
     }
 
     public void cleanup() {
@@ -248,19 +536,85 @@ public class Scene {
             obj.cleanup();
         }
         gameObjects.clear();
+        spatialIndex.clear();
+        broadphase.clear();
+        if (meshLoader != null) {
+            setMeshLoader(null); // Meshes still in flight are discarded when the loader is cleaned up
+        }
 
+        if (renderer != null) {
+            renderer.cleanup();
+        }
         if (shader != null) {
             shader.cleanup();
         }
+        if (geometryPool != null) {
+            if (Mesh.getGeometryPool() == geometryPool) {
+                Mesh.setGeometryPool(null);
+            }
+            geometryPool.cleanup();
+        }
     }
 
     // Utility methods
     public int getObjectCount() { return gameObjects.size(); }
     public Camera getCamera() { return camera; }
+    public TransformStore getTransformStore() { return transforms; }
     public Shader getShader() { return shader; }
+    public GeometryPool getGeometryPool() { return geometryPool; }
+    /**
+     * Generates and uploads spheres in the background; objects draw once their mesh is
+     * resident. The loader stays owned by the caller, who cleans it up after the scene.
+     */
+    public void setMeshLoader(MeshLoader loader) {
+        meshLoader = loader;
+        MeshCache.setLoader(loader);
+    }
+
+    public MeshLoader getMeshLoader() { return meshLoader; }
+    public InstancedRenderer getRenderer() { return renderer; }
+    public int getDrawCalls() { return renderer.getDrawCalls(); }
+    // GL calls issued and elided by GLState during the last render()
+    public int getBindCount() { return GLState.getBindCount(); }
+    public int getStateChanges() { return GLState.getStateChangeCount(); }
+    public int getSkippedStateChanges() { return GLState.getSkippedCount(); }
+
+    // Frustum culling statistics of the last rendered frame
+    public int getVisibleCount() { return visibleCount; }
+    public int getCulledCount() { return culledCount; }
+    public Frustum getFrustum() { return frustum; }
+    public DynamicAabbTree<GameObject> getSpatialIndex() { return spatialIndex; }
+    public SweepAndPrune getBroadphase() { return broadphase; }
+
+    public PerformanceMonitor getPerformanceMonitor() { return monitor; }
+    public JobSystem getJobSystem() { return jobs; }
+
+    public boolean isParallelUpdateEnabled() { return parallelUpdateEnabled; }
+    public void setParallelUpdateEnabled(boolean enabled) { parallelUpdateEnabled = enabled; }
+
+    // Objects whose level of detail changed in the last rendered frame
+    public int getLodSwitches() { return lodSwitches; }
+    public boolean isLodEnabled() { return lodEnabled; }
+    // Without LOD selection, every object keeps the level it had
+    public void setLodEnabled(boolean enabled) { lodEnabled = enabled; }
+
+    public boolean isFrustumCullingEnabled() { return frustumCullingEnabled; }
+    public void setFrustumCullingEnabled(boolean enabled) {
+        frustumCullingEnabled = enabled;
+        if (!enabled) {
+            transforms.clearFlag(TransformStore.FLAG_CULLED);
+            visibleCount = gameObjects.size();
+            culledCount = 0;
+        }
+    }
+
+    // Toggles between instanced batches and one draw per object
+    public void setInstancingEnabled(boolean enabled) { renderer.setInstancingEnabled(enabled); }
 
     // Window resize handling
     public void onWindowResize(int width, int height) {
+        windowWidth = width;
+        windowHeight = height; // LOD selection measures sizes in pixels
         camera.setAspectRatio((float)width / height);
     }
 
@@ -281,7 +635,7 @@ public class Scene {
                 ", toRemove=" + toRemove +
                 ", shader=" + shader +
                 ", camera=" + camera +
-                ", modelMatrix=" + modelMatrix +
+                ", renderer=" + renderer +
                 
                 ", gameObjects= {" + objs + "}";
     }
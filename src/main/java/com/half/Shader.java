@@ -3,7 +3,7 @@ package com.half;
 import org.lwjgl.system.MemoryUtil;
 import org.lwjgl.system.MemoryStack;
 
-import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -15,13 +15,20 @@ import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.opengl.GL15.*;
 import static org.lwjgl.opengl.GL20.*;
 import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL41.*;
 
 // Shader class for handling OpenGL shaders
+// Sources are compiled by link(), unless a ProgramBinaryCache set with setBinaryCache()
+// already holds the linked program
 public class Shader {
     private int programId;
-    private int vertexShaderId;
-    private int fragmentShaderId;
-    private Map<String, Integer> uniforms;
+    private String vertexSource;
+    private String fragmentSource;
+    private Map<String, UniformHandle> uniforms; // Active uniforms, filled by link()
+    private boolean loadedFromCache;
+    private long linkNanos; // Compile and link, or binary load, time of the last link()
+
+    private static ProgramBinaryCache binaryCache;
 
     public Shader() {
         programId = glCreateProgram();
@@ -29,14 +36,15 @@ public class Shader {
         if (programId == 0) {
             throw new RuntimeException("Could not create shader program");
         }
+        GpuResourceRegistry.register(GpuResourceRegistry.Type.PROGRAM, programId, 0, "Shader " + programId);
     }
 
     public void createVertexShader(String shaderCode) {
-        vertexShaderId = createShader(shaderCode, GL_VERTEX_SHADER);
+        vertexSource = shaderCode;
     }
 
     public void createFragmentShader(String shaderCode) {
-        fragmentShaderId = createShader(shaderCode, GL_FRAGMENT_SHADER);
+        fragmentSource = shaderCode;
     }
 
     private int createShader(String shaderCode, int shaderType) {
@@ -57,69 +65,152 @@ public class Shader {
     }
 
     public void link() {
-        glLinkProgram(programId);
-        if (glGetProgrami(programId, GL_LINK_STATUS) == 0) {
-            throw new RuntimeException("Error linking shader: " + glGetProgramInfoLog(programId, 1024));
+        long start = System.nanoTime();
+        ProgramBinaryCache cache = binaryCache;
+        loadedFromCache = cache != null && cache.load(programId, sources());
+        if (!loadedFromCache) {
+            compileAndLink(cache != null);
+            if (cache != null) {
+                cache.store(programId, sources());
+            }
         }
-
-        if (vertexShaderId != 0) {
-            glDetachShader(programId, vertexShaderId);
-        }
-        if (fragmentShaderId != 0) {
-            glDetachShader(programId, fragmentShaderId);
+        linkNanos = System.nanoTime() - start;
+        if (cache != null) {
+            // The binary's size is the best estimate of driver memory there is
+            GpuResourceRegistry.resize(GpuResourceRegistry.Type.PROGRAM, programId, glGetProgrami(programId, GL_PROGRAM_BINARY_LENGTH));
         }
 
         glValidateProgram(programId);
         if (glGetProgrami(programId, GL_VALIDATE_STATUS) == 0) {
             System.err.println("Warning validating shader: " + glGetProgramInfoLog(programId, 1024));
         }
+
+        resolveUniforms();
+    }
+
+    private String[] sources() {
+        return new String[] {
+            vertexSource != null ? vertexSource : "",
+            fragmentSource != null ? fragmentSource : ""
+        };
+    }
+
+    private void compileAndLink(boolean retrievable) {
+        int vertexShaderId = vertexSource != null ? createShader(vertexSource, GL_VERTEX_SHADER) : 0;
+        int fragmentShaderId = fragmentSource != null ? createShader(fragmentSource, GL_FRAGMENT_SHADER) : 0;
+        if (retrievable) {
+            glProgramParameteri(programId, GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL_TRUE);
+        }
+
+        glLinkProgram(programId);
+        // The program keeps its own copy, so the shader objects can go right away
+        for (int shaderId : new int[] { vertexShaderId, fragmentShaderId }) {
+            if (shaderId != 0) {
+                glDetachShader(programId, shaderId);
+                glDeleteShader(shaderId);
+            }
+        }
+        if (glGetProgrami(programId, GL_LINK_STATUS) == 0) {
+            throw new RuntimeException("Error linking shader: " + glGetProgramInfoLog(programId, 1024));
+        }
     }
 
+    // Creates a handle for every active uniform of the linked program
+    private void resolveUniforms() {
+        uniforms.clear();
+        int count = glGetProgrami(programId, GL_ACTIVE_UNIFORMS);
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer size = stack.mallocInt(1);
+            IntBuffer type = stack.mallocInt(1);
+            for (int i = 0; i < count; i++) {
+                String name = glGetActiveUniform(programId, i, size, type);
+                if (name.startsWith("gl_")) {
+                    continue; // Built-ins have no location
+                }
+                // Arrays are reported as "name[0]"; register them under their plain name too
+                int location = glGetUniformLocation(programId, name);
+                UniformHandle handle = new UniformHandle(name, location, type.get(0));
+                uniforms.put(name, handle);
+                if (name.endsWith("[0]")) {
+                    uniforms.put(name.substring(0, name.length() - 3), handle);
+                }
+            }
+        }
+    }
+
+    public int getProgramId() {
+        return programId;
+    }
+
+    // Whether the last link() loaded a cached binary instead of compiling
+    public boolean isLoadedFromCache() { return loadedFromCache; }
+    public long getLinkNanos() { return linkNanos; }
+
+    /**
+     * Makes programs linked from now on go through the given cache; null compiles every time.
+     */
+    public static void setBinaryCache(ProgramBinaryCache cache) {
+        binaryCache = cache;
+    }
+
+    public static ProgramBinaryCache getBinaryCache() { return binaryCache; }
+
     public void bind() {
-        glUseProgram(programId);
+        GLState.useProgram(programId);
     }
 
     public void unbind() {
-        glUseProgram(0);
+        GLState.useProgram(0);
     }
 
     public void cleanup() {
         unbind();
-        if (programId != 0) {
-            glDeleteProgram(programId);
-        }
+        GpuResourceRegistry.release(GpuResourceRegistry.Type.PROGRAM, programId);
+        programId = 0;
     }
 
-    public void createUniform(String uniformName) {
-        int uniformLocation = glGetUniformLocation(programId, uniformName);
-        if (uniformLocation < 0) {
+    /**
+     * Returns the handle of an active uniform. Resolve handles once after link()
+     * and keep them; setting values through a handle does no lookups.
+     * @throws RuntimeException if the program has no such active uniform
+     */
+    public UniformHandle getUniform(String uniformName) {
+        UniformHandle handle = uniforms.get(uniformName);
+        if (handle == null) {
             throw new RuntimeException("Could not find uniform: " + uniformName);
         }
-        uniforms.put(uniformName, uniformLocation);
+        return handle;
     }
 
+    public boolean hasUniform(String uniformName) {
+        return uniforms.containsKey(uniformName);
+    }
+
+    // Kept for existing callers; uniforms are now resolved by link()
+    public UniformHandle createUniform(String uniformName) {
+        return getUniform(uniformName);
+    }
+
+    // Name-based setters look the handle up on every call; prefer holding a UniformHandle
+
     public void setUniform(String uniformName, org.joml.Matrix4f value) {
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            FloatBuffer buffer = stack.mallocFloat(16);
-            value.get(buffer);
-            glUniformMatrix4fv(uniforms.get(uniformName), false, buffer);
-        }
+        getUniform(uniformName).set(value);
     }
 
     public void setUniform(String uniformName, org.joml.Vector3f value) {
-        glUniform3f(uniforms.get(uniformName), value.x, value.y, value.z);
+        getUniform(uniformName).set(value);
     }
 
     public void setUniform(String uniformName, float value) {
-        glUniform1f(uniforms.get(uniformName), value);
+        getUniform(uniformName).set(value);
     }
 
     public void setUniform(String uniformName, int value) {
-        glUniform1i(uniforms.get(uniformName), value);
+        getUniform(uniformName).set(value);
     }
 
     public void setUniform(String uniformName, org.joml.Vector4f value) {
-        glUniform4f(uniforms.get(uniformName), value.x, value.y, value.z, value.w);
+        getUniform(uniformName).set(value);
     }
 
     // Default shaders for basic rendering
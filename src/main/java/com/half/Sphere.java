@@ -1,6 +1,6 @@
 package com.half;
 
-import org.joml.Vector3f;
+import org.joml.Vector3fc;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -9,10 +9,10 @@ public class Sphere extends GameObject {
     private float radius;
 
     public Sphere(String name, float radius, int rings, int sectors) {
-        super(name, new SphereMesh(radius, rings, sectors));
+        super(name, MeshCache.getSphere(radius, rings, sectors));
         this.radius = radius;
-        this.hasPhysics = true;
-        this.bounds = new Vector3f(radius, radius, radius);
+        setHasPhysics(true);
+        setBounds(radius, radius, radius);
     }
 
     public Sphere(String name) {
@@ -79,14 +79,13 @@ public class Sphere extends GameObject {
 
     @Override
     public void start() {
-        System.out.println("Sphere " + name + " spawned with radius " + radius);
+        JobSystem.defer(() -> System.out.println("Sphere " + name + " spawned with radius " + radius));
     }
 
     @Override
     public void update(float deltaTime) {
         // Gentle rotation
-        getTransform().getRotation().y += 30 * deltaTime;
-        getTransform().getRotation().x += 15 * deltaTime;
+        getTransform().rotate(15 * deltaTime, 30 * deltaTime, 0);
         updatePhysics(deltaTime);
     }
 
@@ -94,9 +93,8 @@ public class Sphere extends GameObject {
     public void onCollision(GameObject other) {
         System.out.println("Sphere " + name + " bounced off " + other.getName());
         // Elastic collision for spheres
-        getVelocity().x *= -0.95f;
-        getVelocity().y *= -0.95f;
-        getVelocity().z *= -0.95f;
+        Vector3fc velocity = getVelocity();
+        setVelocity(velocity.x() * -0.95f, velocity.y() * -0.95f, velocity.z() * -0.95f);
     }
 
     public float getRadius() { 
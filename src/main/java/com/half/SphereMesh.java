@@ -6,6 +6,10 @@ public class SphereMesh extends Mesh {
 
     public SphereMesh(float radius, int sectorCount, int stackCount) {
         super(MeshGenerator.generateSphereVertices(radius, sectorCount, stackCount), MeshGenerator.generateSphereIndices(sectorCount, stackCount));
+        // Regenerated after eviction rather than kept on the heap
+        setSource(() -> new MeshLoader.Geometry(
+            MeshGenerator.generateSphereVertices(radius, sectorCount, stackCount),
+            MeshGenerator.generateSphereIndices(sectorCount, stackCount)));
     }
 
     @Override
@@ -0,0 +1,200 @@
+package com.half;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL32.*;
+import static org.lwjgl.opengl.GL44.*;
+
+/**
+ * StreamingBuffer - upload path for data rewritten every frame (instances, particles,
+ * debug lines). Usage per frame: {@link #begin()}, write into the returned buffer,
+ * {@link #end()}, then draw from {@link #getOffset()}.
+ *
+ * With GL 4.4 or ARB_buffer_storage, the buffer is mapped once, persistently and
+ * coherently, and split into {@link #RING_SIZE} regions used round robin. Each region
+ * gets a fence once the next region is started; begin() waits for it before the CPU
+ * writes there again, which only stalls if the GPU is more than two frames behind.
+ * Otherwise a single region is orphaned and mapped unsynchronized on every begin().
+ *
+ * Meant for GL_ARRAY_BUFFER, GL_DRAW_INDIRECT_BUFFER and the like; element buffers
+ * are per-VAO state and need their VAO bound before begin().
+ */
+public class StreamingBuffer {
+    public static final int RING_SIZE = 3;
+    private static final long WAIT_TIMEOUT_NANOS = 1_000_000L; // Per glClientWaitSync call
+
+    private final int target;
+    private final int regionBytes;
+    private final boolean persistent;
+    private final int regionCount;
+    private final long[] fences;
+    private int bufferId;
+    private long mappedAddress; // Persistent mapping, 0 when orphaning
+    private int region = -1;
+    private boolean writing;
+
+    // Statistics since creation
+    private int stalls;
+    private long stallNanos;
+    private int frames;
+
+    /**
+     * Uses persistent mapping when the context supports it.
+     */
+    public StreamingBuffer(int target, int regionBytes) {
+        this(target, regionBytes, true);
+    }
+
+    /**
+     * @param regionBytes bytes writable per begin()/end() pair
+     * @param allowPersistent false forces the orphaning path, e.g. to test it on a newer context
+     */
+    public StreamingBuffer(int target, int regionBytes, boolean allowPersistent) {
+        if (regionBytes < 1) {
+            throw new IllegalArgumentException("Region size must be positive: " + regionBytes);
+        }
+        this.target = target;
+        this.regionBytes = regionBytes;
+
+        GLCapabilities caps = GL.getCapabilities();
+        this.persistent = allowPersistent && (caps.OpenGL44 || caps.GL_ARB_buffer_storage);
+        this.regionCount = persistent ? RING_SIZE : 1;
+        this.fences = new long[regionCount];
+
+        bufferId = glGenBuffers();
+        if (bufferId == 0) {
+            throw new RuntimeException("Failed to create streaming buffer");
+        }
+        GLState.bindBuffer(target, bufferId);
+        long size = (long) regionBytes * regionCount;
+        GpuResourceRegistry.register(GpuResourceRegistry.Type.BUFFER, bufferId, size, "StreamingBuffer");
+        if (persistent) {
+            int flags = GL_MAP_WRITE_BIT | GL_MAP_PERSISTENT_BIT | GL_MAP_COHERENT_BIT;
+            glBufferStorage(target, size, flags);
+            ByteBuffer mapping = glMapBufferRange(target, 0, size, flags);
+            if (mapping == null) {
+                throw new RuntimeException("Failed to map streaming buffer");
+            }
+            mappedAddress = MemoryUtil.memAddress(mapping);
+        } else {
+            glBufferData(target, size, GL_STREAM_DRAW);
+        }
+    }
+
+    /**
+     * Starts writing the next region. Draws reading the previous region must already
+     * have been issued, as they are fenced here.
+     * @return writable memory of {@link #getRegionBytes()} bytes, positioned at 0
+     */
+    public ByteBuffer begin() {
+        if (writing) {
+            throw new IllegalStateException("begin() called twice without end()");
+        }
+        if (bufferId == 0) {
+            throw new IllegalStateException("Streaming buffer was cleaned up");
+        }
+        writing = true;
+        frames++;
+
+        if (!persistent) {
+            region = 0;
+            GLState.bindBuffer(target, bufferId);
+            // Invalidating orphans the old storage, so in-flight draws keep theirs
+            ByteBuffer mapping = glMapBufferRange(target, 0, regionBytes,
+                GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_BUFFER_BIT | GL_MAP_UNSYNCHRONIZED_BIT);
+            if (mapping == null) {
+                writing = false;
+                throw new RuntimeException("Failed to map streaming buffer");
+            }
+            return mapping;
+        }
+
+        if (region >= 0) {
+            fences[region] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        }
+        region = (region + 1) % regionCount;
+        waitForRegion(region);
+        return MemoryUtil.memByteBuffer(mappedAddress + (long) region * regionBytes, regionBytes);
+    }
+
+    // Blocks until the GPU has finished the draws that read the region last time
+    private void waitForRegion(int index) {
+        long fence = fences[index];
+        if (fence == 0) {
+            return;
+        }
+        int status = glClientWaitSync(fence, 0, 0);
+        if (status == GL_TIMEOUT_EXPIRED) {
+            stalls++;
+            long start = System.nanoTime();
+            // The first wait flushes, so the fence is sure to be submitted
+            int flags = GL_SYNC_FLUSH_COMMANDS_BIT;
+            do {
+                status = glClientWaitSync(fence, flags, WAIT_TIMEOUT_NANOS);
+                flags = 0;
+            } while (status == GL_TIMEOUT_EXPIRED);
+            stallNanos += System.nanoTime() - start;
+        }
+        glDeleteSync(fence);
+        fences[index] = 0;
+        if (status == GL_WAIT_FAILED) {
+            throw new RuntimeException("glClientWaitSync failed on streaming buffer");
+        }
+    }
+
+    /**
+     * Finishes writing. The data can be drawn from {@link #getOffset()} afterwards.
+     * @return false if the orphaned storage was lost and the data must be rewritten
+     */
+    public boolean end() {
+        if (!writing) {
+            throw new IllegalStateException("end() called without begin()");
+        }
+        writing = false;
+        if (persistent) {
+            return true; // Coherent mapping, nothing to flush
+        }
+        GLState.bindBuffer(target, bufferId);
+        return glUnmapBuffer(target);
+    }
+
+    public void cleanup() {
+        if (bufferId == 0) {
+            return;
+        }
+        for (int i = 0; i < regionCount; i++) {
+            if (fences[i] != 0) {
+                glDeleteSync(fences[i]);
+                fences[i] = 0;
+            }
+        }
+        if (writing && !persistent) {
+            GLState.bindBuffer(target, bufferId);
+            glUnmapBuffer(target);
+        }
+        writing = false;
+        // Deleting the buffer also releases a persistent mapping
+        GpuResourceRegistry.release(GpuResourceRegistry.Type.BUFFER, bufferId);
+        bufferId = 0;
+        mappedAddress = 0;
+    }
+
+    public int getBufferId() { return bufferId; }
+    public int getTarget() { return target; }
+    public int getRegionBytes() { return regionBytes; }
+    public boolean isPersistent() { return persistent; }
+
+    // Byte offset of the current region within the GL buffer
+    public long getOffset() { return region < 0 ? 0 : (long) region * regionBytes; }
+
+    // Number of begin() calls that had to wait for the GPU, and the total time spent waiting
+    public int getStallCount() { return stalls; }
+    public long getStallNanos() { return stallNanos; }
+    public int getFrameCount() { return frames; }
+}
@@ -0,0 +1,228 @@
+package com.half;
+
+import java.util.Arrays;
+
+/**
+ * SweepAndPrune - sort-and-sweep collision broadphase.
+ * Bodies are kept in a persistent order sorted by the lower x endpoint of their box.
+ * Objects move little between frames, so re-sorting with an insertion sort is close to
+ * linear. The sweep then only compares bodies whose x intervals overlap, and candidate
+ * pairs get an exact AABB test on the remaining axes.
+ *
+ * Boxes match {@link GameObject#checkCollision}: position +/- bounds * scale. Only active
+ * objects with physics take part; others are parked at the end of the order.
+ */
+public class SweepAndPrune {
+    private GameObject[] bodies = new GameObject[64];
+    private int[] rank = new int[64]; // Sorted position of each body
+
+    // Boxes stored in sorted order, so the sweep reads memory sequentially
+    private int[] sortedBody = new int[64];
+    private float[] minX = new float[64];
+    private float[] maxX = new float[64];
+    private float[] minY = new float[64];
+    private float[] maxY = new float[64];
+    private float[] minZ = new float[64];
+    private float[] maxZ = new float[64];
+    private int count;
+
+    // Overlapping pairs found by the last update, dispatched after the sweep
+    private int[] pairs = new int[128];
+    private int pairCount;
+
+    // Statistics of the last update
+    private int swaps;
+    private int tests;
+    private long updateNanos;
+
+    /**
+     * Registers an object. Its handle is stored on the object.
+     */
+    public void add(GameObject obj) {
+        if (obj.broadphaseId != -1) {
+            return;
+        }
+        if (count == bodies.length) {
+            grow(count * 2);
+        }
+        int id = count++;
+        bodies[id] = obj;
+        obj.broadphaseId = id;
+        // Parked at the end until the next update computes its box; the sort moves it into place
+        rank[id] = id;
+        sortedBody[id] = id;
+        minX[id] = Float.POSITIVE_INFINITY;
+    }
+
+    public void remove(GameObject obj) {
+        int id = obj.broadphaseId;
+        if (id == -1) {
+            return;
+        }
+        obj.broadphaseId = -1;
+        int last = --count;
+
+        // Close the gap in the sorted arrays, keeping the order of the others
+        int r = rank[id];
+        int tail = last - r;
+        System.arraycopy(sortedBody, r + 1, sortedBody, r, tail);
+        System.arraycopy(minX, r + 1, minX, r, tail);
+        System.arraycopy(maxX, r + 1, maxX, r, tail);
+        System.arraycopy(minY, r + 1, minY, r, tail);
+        System.arraycopy(maxY, r + 1, maxY, r, tail);
+        System.arraycopy(minZ, r + 1, minZ, r, tail);
+        System.arraycopy(maxZ, r + 1, maxZ, r, tail);
+        for (int k = r; k < last; k++) {
+            rank[sortedBody[k]] = k;
+        }
+
+        // Renumber the last body into the freed handle
+        if (id != last) {
+            bodies[id] = bodies[last];
+            bodies[id].broadphaseId = id;
+            rank[id] = rank[last];
+            sortedBody[rank[id]] = id;
+        }
+        bodies[last] = null;
+    }
+
+    /**
+     * Refreshes all boxes, re-sorts, sweeps, and calls onCollision on both objects
+     * of every overlapping pair.
+     * @return number of colliding pairs
+     */
+    public int update() {
+        long start = System.nanoTime();
+        refreshBoxes();
+        sort();
+        sweep();
+
+        // Dispatch after the sweep so callbacks can freely change velocities or flags
+        for (int p = 0; p < pairCount; p++) {
+            GameObject a = bodies[pairs[p * 2]];
+            GameObject b = bodies[pairs[p * 2 + 1]];
+            a.onCollision(b);
+            b.onCollision(a);
+        }
+        updateNanos = System.nanoTime() - start;
+        return pairCount;
+    }
+
+    private void refreshBoxes() {
+        for (int k = 0; k < count; k++) {
+            Transform transform = bodies[sortedBody[k]].getTransform();
+            TransformStore store = transform.getStore();
+            int slot = transform.getSlot();
+            int f = store.flags[slot];
+            if ((f & TransformStore.FLAG_ACTIVE) == 0 || (f & TransformStore.FLAG_PHYSICS) == 0) {
+                minX[k] = Float.POSITIVE_INFINITY;
+                continue;
+            }
+            int i = slot * 3;
+            float[] position = store.position, bounds = store.bounds, scale = store.scale;
+            float ex = bounds[i] * scale[i];
+            float ey = bounds[i + 1] * scale[i + 1];
+            float ez = bounds[i + 2] * scale[i + 2];
+            minX[k] = position[i] - ex;
+            maxX[k] = position[i] + ex;
+            minY[k] = position[i + 1] - ey;
+            maxY[k] = position[i + 1] + ey;
+            minZ[k] = position[i + 2] - ez;
+            maxZ[k] = position[i + 2] + ez;
+        }
+    }
+
+    // Insertion sort by min x, cheap because the order barely changes between frames
+    private void sort() {
+        int moved = 0;
+        for (int i = 1; i < count; i++) {
+            float key = minX[i];
+            if (minX[i - 1] <= key) {
+                continue;
+            }
+            int body = sortedBody[i];
+            float x1 = maxX[i], y0 = minY[i], y1 = maxY[i], z0 = minZ[i], z1 = maxZ[i];
+            int j = i - 1;
+            while (j >= 0 && minX[j] > key) {
+                sortedBody[j + 1] = sortedBody[j];
+                minX[j + 1] = minX[j];
+                maxX[j + 1] = maxX[j];
+                minY[j + 1] = minY[j];
+                maxY[j + 1] = maxY[j];
+                minZ[j + 1] = minZ[j];
+                maxZ[j + 1] = maxZ[j];
+                rank[sortedBody[j + 1]] = j + 1;
+                j--;
+            }
+            moved += i - 1 - j;
+            sortedBody[j + 1] = body;
+            minX[j + 1] = key;
+            maxX[j + 1] = x1;
+            minY[j + 1] = y0;
+            maxY[j + 1] = y1;
+            minZ[j + 1] = z0;
+            maxZ[j + 1] = z1;
+            rank[body] = j + 1;
+        }
+        swaps = moved;
+    }
+
+    private void sweep() {
+        pairCount = 0;
+        int candidates = 0;
+        for (int i = 0; i < count; i++) {
+            if (minX[i] == Float.POSITIVE_INFINITY) {
+                break; // Only parked bodies follow
+            }
+            float x1 = maxX[i], y0 = minY[i], y1 = maxY[i], z0 = minZ[i], z1 = maxZ[i];
+
+            int j = i + 1;
+            // Sorted, so no body past the first one starting beyond x1 overlaps on x either
+            for (; j < count && minX[j] <= x1; j++) {
+                if (minY[j] <= y1 && maxY[j] >= y0 && minZ[j] <= z1 && maxZ[j] >= z0) {
+                    addPair(sortedBody[i], sortedBody[j]);
+                }
+            }
+            candidates += j - i - 1;
+        }
+        tests = candidates;
+    }
+
+    private void addPair(int a, int b) {
+        if (pairCount * 2 == pairs.length) {
+            pairs = Arrays.copyOf(pairs, pairs.length * 2);
+        }
+        pairs[pairCount * 2] = a;
+        pairs[pairCount * 2 + 1] = b;
+        pairCount++;
+    }
+
+    private void grow(int capacity) {
+        bodies = Arrays.copyOf(bodies, capacity);
+        rank = Arrays.copyOf(rank, capacity);
+        sortedBody = Arrays.copyOf(sortedBody, capacity);
+        minX = Arrays.copyOf(minX, capacity);
+        maxX = Arrays.copyOf(maxX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        maxY = Arrays.copyOf(maxY, capacity);
+        minZ = Arrays.copyOf(minZ, capacity);
+        maxZ = Arrays.copyOf(maxZ, capacity);
+    }
+
+    public void clear() {
+        for (int id = 0; id < count; id++) {
+            bodies[id].broadphaseId = -1;
+            bodies[id] = null;
+        }
+        count = 0;
+        pairCount = 0;
+    }
+
+    public int getBodyCount() { return count; }
+    public int getPairCount() { return pairCount; }
+    // Candidate pairs that overlapped on x and were tested on the other axes
+    public int getTestCount() { return tests; }
+    // Order swaps performed by the last insertion sort
+    public int getSwapCount() { return swaps; }
+    public long getUpdateNanos() { return updateNanos; }
+}
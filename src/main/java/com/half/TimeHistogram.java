@@ -0,0 +1,94 @@
+package com.half;
+
+import java.util.Arrays;
+
+/**
+ * TimeHistogram - counts durations in nanoseconds into log-linear buckets, in the manner
+ * of HdrHistogram, so percentiles come out with a bounded relative error.
+ *
+ * Values below 128 ns get a bucket each. Above that, every power of two is split into
+ * 64 equal buckets, so a bucket is at most 1/64 (about 1.6%) of its value wide. Values
+ * above {@link #MAX_TRACKABLE_NANOS} land in the last bucket; the exact maximum is kept
+ * separately. Recording is a few shifts and an increment and never allocates.
+ */
+public final class TimeHistogram {
+    public static final long MAX_TRACKABLE_NANOS = 1L << 36; // About 68 seconds
+
+    private static final int LINEAR_BITS = 7; // Values below 1 << 7 are counted exactly
+    private static final int SUB_BUCKET_BITS = LINEAR_BITS - 1; // 64 buckets per power of two
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = indexOf(MAX_TRACKABLE_NANOS) + 1;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+    private long totalNanos;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    private static int indexOf(long nanos) {
+        if (nanos < (1L << LINEAR_BITS)) {
+            return (int) nanos;
+        }
+        // Keep the top LINEAR_BITS bits: the shift selects the power of two, the rest the sub-bucket
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+        return (1 << LINEAR_BITS) + (shift - 1) * SUB_BUCKETS + (int) ((nanos >>> shift) - SUB_BUCKETS);
+    }
+
+    // Largest value counted into the bucket
+    private static long highestValueOf(int index) {
+        if (index < (1 << LINEAR_BITS)) {
+            return index;
+        }
+        int shift = (index - (1 << LINEAR_BITS)) / SUB_BUCKETS + 1;
+        long subBucket = (index - (1 << LINEAR_BITS)) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0; // A clock step backwards
+        }
+        counts[indexOf(Math.min(nanos, MAX_TRACKABLE_NANOS))]++;
+        totalCount++;
+        totalNanos += nanos;
+        if (nanos < min) min = nanos;
+        if (nanos > max) max = nanos;
+    }
+
+    /**
+     * The value below which the given percentage of recorded values fall, rounded up to
+     * the top of its bucket and never above the recorded maximum.
+     * @param percentile in [0, 100]
+     * @return nanoseconds, or 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("Percentile must be in [0, 100]: " + percentile);
+        }
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        totalNanos = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    public long getCount() { return totalCount; }
+    public long getMin() { return totalCount == 0 ? 0 : min; }
+    public long getMax() { return max; }
+    public double getMean() { return totalCount == 0 ? 0.0 : (double) totalNanos / totalCount; }
+}
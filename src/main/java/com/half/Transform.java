@@ -1,51 +1,210 @@
 package com.half;
 
+import org.joml.Matrix3f;
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
 import org.joml.Vector3f;
+import org.joml.Vector3fc;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Transform - a view over one slot of a {@link TransformStore}.
+ * A new transform owns a private single-slot store; adding its object to a Scene
+ * migrates the data into the scene's shared store.
+ *
+ * The vector getters return read-only views that are refreshed on every call.
+ * Use the setters (or translate/rotate) to modify the transform; they mark the
+ * cached model and normal matrices dirty so they are rebuilt only when needed.
+ *
+ * Transforms can be parented; position, rotation and scale are then relative to the
+ * parent. Parent and child should live in the same store (the same Scene) so the
+ * store can propagate world matrices in its per-frame pass.
+ */
 public class Transform {
-    private Vector3f position;
-    private Vector3f rotation;
-    private Vector3f scale;
+    private TransformStore store;
+    private int slot;
+    private Transform parent;
+    private List<Transform> children; // Created when the first child is added
+    private boolean attached; // In a shared store, e.g. a Scene's, rather than its own
+
+    // Lazily created read-only views, so transforms that are never queried this way allocate nothing
+    private Vector3f positionView;
+    private Vector3f rotationView;
+    private Vector3f scaleView;
+    private Matrix4f modelView;
 
     public Transform() {
-        this.position = new Vector3f(0, 0, 0);
-        this.rotation = new Vector3f(0, 0, 0);
-        this.scale = new Vector3f(1, 1, 1);
+        this.store = new TransformStore(1);
+        this.slot = store.allocate(this);
+    }
+
+    /**
+     * Moves this transform's data into the given store.
+     */
+    public void attach(TransformStore target) {
+        if (target == store) {
+            return;
+        }
+        int newSlot = target.allocate(this);
+        target.copySlot(store, slot, newSlot);
+        store.free(slot);
+        store = target;
+        slot = newSlot;
+        attached = true;
+    }
+
+    /**
+     * Moves this transform's data back into a private store. It leaves the hierarchy:
+     * its children become roots, keeping their local values, and it loses its parent,
+     * so nothing in the old store refers to the freed slot any more.
+     */
+    public void detach() {
+        if (children != null) {
+            for (int i = children.size() - 1; i >= 0; i--) {
+                children.get(i).setParent(null);
+            }
+        }
+        setParent(null);
+        attach(new TransformStore(1));
+        attached = false;
+    }
+
+    // True while the transform lives in a shared store, whose owner integrates velocities
+    public boolean isAttached() { return attached; }
+
+    /**
+     * Re-parents this transform. Pass null to make it a root again.
+     * @throws IllegalArgumentException if the new parent is this transform or one of its descendants
+     */
+    public void setParent(Transform newParent) {
+        if (newParent == parent) {
+            return;
+        }
+        for (Transform p = newParent; p != null; p = p.parent) {
+            if (p == this) {
+                throw new IllegalArgumentException("Transform cannot be parented to itself or its descendants");
+            }
+        }
+
+        if (parent != null) {
+            parent.children.remove(this);
+        }
+        parent = newParent;
+        if (newParent != null) {
+            if (newParent.children == null) {
+                newParent.children = new ArrayList<>();
+            }
+            newParent.children.add(this);
+        }
+        store.markHierarchyChanged(slot);
     }
 
-    public Vector3f getPosition() {
-        return position;
+    public Transform getParent() { return parent; }
+
+    public List<Transform> getChildren() {
+        return children != null ? Collections.unmodifiableList(children) : Collections.<Transform>emptyList();
     }
 
-    public void setPosition(Vector3f position) {
-        this.position = position;
+    /**
+     * Computes the world matrix by walking up the parent chain. Unlike the cached world
+     * matrices of the store, this is always current, even between frames.
+     */
+    public Matrix4f getWorldMatrix(Matrix4f dest) {
+        store.getModelMatrix(slot, dest);
+        for (Transform p = parent; p != null; p = p.parent) {
+            dest.mulLocal(p.getModelMatrix());
+        }
+        return dest;
+    }
+
+    /**
+     * Returns the cached local model matrix (T * Rx * Ry * Rz * S), recomputing it only if dirty.
+     */
+    public Matrix4fc getModelMatrix() {
+        if (modelView == null) modelView = new Matrix4f();
+        return store.getModelMatrix(slot, modelView);
+    }
+
+    public Matrix4f getModelMatrix(Matrix4f dest) {
+        return store.getModelMatrix(slot, dest);
+    }
+
+    public Matrix3f getNormalMatrix(Matrix3f dest) {
+        return store.getNormalMatrix(slot, dest);
+    }
+
+    public boolean isDirty() {
+        return store.hasFlag(slot, TransformStore.FLAG_DIRTY);
+    }
+
+    public TransformStore getStore() { return store; }
+    public int getSlot() { return slot; }
+
+    // Called by the store when it compacts its slots
+    void setSlot(int slot) { this.slot = slot; }
+
+    public Vector3fc getPosition() {
+        if (positionView == null) positionView = new Vector3f();
+        return store.getPosition(slot, positionView);
+    }
+
+    public Vector3f getPosition(Vector3f dest) {
+        return store.getPosition(slot, dest);
+    }
+
+    public void setPosition(Vector3fc position) {
+        store.setPosition(slot, position.x(), position.y(), position.z());
     }
 
     public void setPosition(float x, float y, float z) {
-        this.position.set(x, y, z);
+        store.setPosition(slot, x, y, z);
     }
 
-    public Vector3f getRotation() {
-        return rotation;
+    public void translate(float dx, float dy, float dz) {
+        int i = slot * 3;
+        store.setPosition(slot, store.position[i] + dx, store.position[i + 1] + dy, store.position[i + 2] + dz);
     }
 
-    public void setRotation(Vector3f rotation) {
-        this.rotation = rotation;
+    public Vector3fc getRotation() {
+        if (rotationView == null) rotationView = new Vector3f();
+        return store.getRotation(slot, rotationView);
+    }
+
+    public Vector3f getRotation(Vector3f dest) {
+        return store.getRotation(slot, dest);
+    }
+
+    public void setRotation(Vector3fc rotation) {
+        store.setRotation(slot, rotation.x(), rotation.y(), rotation.z());
     }
 
     public void setRotation(float x, float y, float z) {
-        this.rotation.set(x, y, z);
+        store.setRotation(slot, x, y, z);
+    }
+
+    // Adds the given angles (degrees) to the current rotation
+    public void rotate(float dx, float dy, float dz) {
+        int i = slot * 3;
+        store.setRotation(slot, store.rotation[i] + dx, store.rotation[i + 1] + dy, store.rotation[i + 2] + dz);
+    }
+
+    public Vector3fc getScale() {
+        if (scaleView == null) scaleView = new Vector3f();
+        return store.getScale(slot, scaleView);
     }
 
-    public Vector3f getScale() {
-        return scale;
+    public Vector3f getScale(Vector3f dest) {
+        return store.getScale(slot, dest);
     }
 
-    public void setScale(Vector3f scale) {
-        this.scale = scale;
+    public void setScale(Vector3fc scale) {
+        store.setScale(slot, scale.x(), scale.y(), scale.z());
     }
 
     public void setScale(float x, float y, float z) {
-        this.scale.set(x, y, z);
+        store.setScale(slot, x, y, z);
     }
 }
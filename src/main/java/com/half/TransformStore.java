@@ -0,0 +1,481 @@
+package com.half;
+
+import org.joml.Matrix3f;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * TransformStore - structure-of-arrays storage for per-object spatial data.
+ * Positions, rotations, scales, velocities, bounds and colors live in contiguous
+ * float arrays indexed by slot, so systems like physics integration walk memory
+ * linearly instead of chasing a Vector3f per field per object.
+ *
+ * Slots are kept dense: freeing a slot moves the last slot into the hole and
+ * updates the owning Transform, so [0, size) is always fully populated.
+ *
+ * World matrices are propagated breadth-first over a depth-sorted slot order that is
+ * rebuilt only when the hierarchy changes. Each depth level only depends on the one
+ * above it, so large levels are split across cores.
+ */
+public class TransformStore {
+    private static final int PARALLEL_THRESHOLD = 8192; // Level size above which propagation is split
+    private static final int CHUNK_SIZE = 2048;
+
+    public static final byte FLAG_ACTIVE = 1;
+    public static final byte FLAG_PHYSICS = 1 << 1;
+    public static final byte FLAG_DIRTY = 1 << 2; // Cached matrices are stale
+    public static final byte FLAG_CULLED = 1 << 3; // Outside the view frustum last frame
+    public static final byte FLAG_SNAP = 1 << 4; // Render without interpolation until the next tick, e.g. after spawning
+
+    // Packed xyz triples (xyzw for color), indexed by slot * 3 (slot * 4)
+    float[] position;
+    float[] rotation; // Euler angles in degrees
+    float[] scale;
+    float[] velocity;
+    float[] bounds; // Half extents used for collision detection
+    float[] color;
+    float[] model; // Cached column-major 4x4 model matrices, 16 floats per slot
+    float[] normal; // Cached column-major 3x3 normal matrices, 9 floats per slot
+    float[] world; // Parent world * local model, 16 floats per slot
+    float[] worldNormal; // Parent world normal * local normal, 9 floats per slot
+    float[] worldBounds; // World AABB as center xyz + half extents xyz, 6 floats per slot
+    float[] prevWorld; // World matrices at the start of the current tick, for interpolation
+    float[] prevWorldNormal;
+    int[] worldStamp; // Pass in which the world matrix last changed
+    byte[] flags;
+    Transform[] owners;
+    int size;
+
+    // Flattened hierarchy: slots sorted by depth, with the start of each depth level
+    private int[] order = new int[0];
+    private int[] parents = new int[0];
+    private int[] depths = new int[0];
+    private int[] levelStart = new int[1];
+    private int levelCount;
+    private boolean hierarchyChanged = true;
+    private int pass;
+    private int snapshotPass; // Pass of the last snapshot()
+
+    public TransformStore(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        position = new float[capacity * 3];
+        rotation = new float[capacity * 3];
+        scale = new float[capacity * 3];
+        velocity = new float[capacity * 3];
+        bounds = new float[capacity * 3];
+        color = new float[capacity * 4];
+        model = new float[capacity * 16];
+        normal = new float[capacity * 9];
+        world = new float[capacity * 16];
+        worldNormal = new float[capacity * 9];
+        worldBounds = new float[capacity * 6];
+        prevWorld = new float[capacity * 16];
+        prevWorldNormal = new float[capacity * 9];
+        worldStamp = new int[capacity];
+        flags = new byte[capacity];
+        owners = new Transform[capacity];
+    }
+
+    /**
+     * Reserves a slot for the given transform, initialized to identity values,
+     * unit bounds, white and active. Its matrices are computed on first use.
+     */
+    int allocate(Transform owner) {
+        if (size == owners.length) {
+            grow(size * 2);
+        }
+        int slot = size++;
+        set3(position, slot, 0, 0, 0);
+        set3(rotation, slot, 0, 0, 0);
+        set3(scale, slot, 1, 1, 1);
+        set3(velocity, slot, 0, 0, 0);
+        set3(bounds, slot, 1, 1, 1);
+        int c = slot * 4;
+        color[c] = color[c + 1] = color[c + 2] = color[c + 3] = 1.0f;
+        flags[slot] = FLAG_ACTIVE | FLAG_DIRTY | FLAG_SNAP;
+        owners[slot] = owner;
+        hierarchyChanged = true;
+        return slot;
+    }
+
+    /**
+     * Releases a slot, moving the last slot into its place to keep the arrays dense.
+     */
+    void free(int slot) {
+        int last = --size;
+        if (slot != last) {
+            copySlot(this, last, slot);
+            owners[slot].setSlot(slot);
+        }
+        owners[last] = null;
+        hierarchyChanged = true;
+    }
+
+    /**
+     * Copies all data of a slot in another store (or this one) into a slot of this store.
+     * The owner is left untouched.
+     */
+    void copySlot(TransformStore from, int fromSlot, int toSlot) {
+        System.arraycopy(from.position, fromSlot * 3, position, toSlot * 3, 3);
+        System.arraycopy(from.rotation, fromSlot * 3, rotation, toSlot * 3, 3);
+        System.arraycopy(from.scale, fromSlot * 3, scale, toSlot * 3, 3);
+        System.arraycopy(from.velocity, fromSlot * 3, velocity, toSlot * 3, 3);
+        System.arraycopy(from.bounds, fromSlot * 3, bounds, toSlot * 3, 3);
+        System.arraycopy(from.color, fromSlot * 4, color, toSlot * 4, 4);
+        System.arraycopy(from.model, fromSlot * 16, model, toSlot * 16, 16);
+        System.arraycopy(from.normal, fromSlot * 9, normal, toSlot * 9, 9);
+        System.arraycopy(from.world, fromSlot * 16, world, toSlot * 16, 16);
+        System.arraycopy(from.worldNormal, fromSlot * 9, worldNormal, toSlot * 9, 9);
+        System.arraycopy(from.worldBounds, fromSlot * 6, worldBounds, toSlot * 6, 6);
+        System.arraycopy(from.prevWorld, fromSlot * 16, prevWorld, toSlot * 16, 16);
+        System.arraycopy(from.prevWorldNormal, fromSlot * 9, prevWorldNormal, toSlot * 9, 9);
+        worldStamp[toSlot] = 0;
+        // The reset stamp invalidates the copied world data, so have it rebuilt
+        flags[toSlot] = (byte) (from.flags[fromSlot] | FLAG_DIRTY);
+        owners[toSlot] = from.owners[fromSlot];
+    }
+
+    private void grow(int capacity) {
+        position = Arrays.copyOf(position, capacity * 3);
+        rotation = Arrays.copyOf(rotation, capacity * 3);
+        scale = Arrays.copyOf(scale, capacity * 3);
+        velocity = Arrays.copyOf(velocity, capacity * 3);
+        bounds = Arrays.copyOf(bounds, capacity * 3);
+        color = Arrays.copyOf(color, capacity * 4);
+        model = Arrays.copyOf(model, capacity * 16);
+        normal = Arrays.copyOf(normal, capacity * 9);
+        world = Arrays.copyOf(world, capacity * 16);
+        worldNormal = Arrays.copyOf(worldNormal, capacity * 9);
+        worldBounds = Arrays.copyOf(worldBounds, capacity * 6);
+        prevWorld = Arrays.copyOf(prevWorld, capacity * 16);
+        prevWorldNormal = Arrays.copyOf(prevWorldNormal, capacity * 9);
+        worldStamp = Arrays.copyOf(worldStamp, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        owners = Arrays.copyOf(owners, capacity);
+    }
+
+    /**
+     * Records the current world matrices as the previous tick state that rendering
+     * interpolates from. Call once at the start of every fixed tick; only slots whose
+     * world matrix changed since the last snapshot are copied.
+     */
+    public void snapshot() {
+        for (int slot = 0; slot < size; slot++) {
+            int stamp = worldStamp[slot];
+            if (stamp > snapshotPass) {
+                System.arraycopy(world, slot * 16, prevWorld, slot * 16, 16);
+                System.arraycopy(worldNormal, slot * 9, prevWorldNormal, slot * 9, 9);
+            }
+            if (stamp != 0) {
+                flags[slot] &= ~FLAG_SNAP; // World has been computed, so prev is valid from now on
+            }
+        }
+        snapshotPass = pass;
+    }
+
+    /**
+     * Applies velocity to position for every active slot with physics enabled,
+     * in one linear pass over the arrays.
+     */
+    public void integrate(float deltaTime) {
+        final byte mask = FLAG_ACTIVE | FLAG_PHYSICS;
+        for (int slot = 0; slot < size; slot++) {
+            if ((flags[slot] & mask) == mask) {
+                integrate(slot, deltaTime);
+            }
+        }
+    }
+
+    /**
+     * Applies velocity to position for a single slot.
+     */
+    public void integrate(int slot, float deltaTime) {
+        int i = slot * 3;
+        if (velocity[i] == 0 && velocity[i + 1] == 0 && velocity[i + 2] == 0) {
+            return; // Resting bodies keep their cached matrices
+        }
+        position[i] += velocity[i] * deltaTime;
+        position[i + 1] += velocity[i + 1] * deltaTime;
+        position[i + 2] += velocity[i + 2] * deltaTime;
+        flags[slot] |= FLAG_DIRTY;
+    }
+
+    /**
+     * Recomputes local matrices of dirty slots and propagates world matrices top-down.
+     * Only subtrees below a changed transform do any matrix math.
+     */
+    public void updateMatrices() {
+        if (hierarchyChanged) {
+            rebuildOrder();
+        }
+        pass++;
+
+        for (int level = 0; level < levelCount; level++) {
+            final int from = levelStart[level];
+            final int to = levelStart[level + 1];
+            if (to - from < PARALLEL_THRESHOLD) {
+                updateWorldRange(from, to);
+            } else {
+                int chunks = (to - from + CHUNK_SIZE - 1) / CHUNK_SIZE;
+                IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                    int start = from + chunk * CHUNK_SIZE;
+                    updateWorldRange(start, Math.min(to, start + CHUNK_SIZE));
+                });
+            }
+        }
+    }
+
+    private void updateWorldRange(int from, int to) {
+        for (int i = from; i < to; i++) {
+            updateWorld(order[i]);
+        }
+    }
+
+    private void updateWorld(int slot) {
+        boolean changed = false;
+        if ((flags[slot] & FLAG_DIRTY) != 0) {
+            computeMatrices(slot);
+            changed = true;
+        }
+
+        int parent = parents[slot];
+        if (parent >= 0) {
+            if (changed || worldStamp[parent] == pass) {
+                mulAffine(world, parent * 16, model, slot * 16, world, slot * 16);
+                mul3(worldNormal, parent * 9, normal, slot * 9, worldNormal, slot * 9);
+                changed = true;
+            }
+        } else if (changed) {
+            System.arraycopy(model, slot * 16, world, slot * 16, 16);
+            System.arraycopy(normal, slot * 9, worldNormal, slot * 9, 9);
+        }
+
+        if (changed) {
+            computeWorldBounds(slot);
+            worldStamp[slot] = pass;
+        }
+    }
+
+    // World AABB of the local bounds box: the center is the translation, extents are |M| * bounds
+    private void computeWorldBounds(int slot) {
+        int m = slot * 16;
+        int b = slot * 3;
+        int o = slot * 6;
+        float bx = bounds[b], by = bounds[b + 1], bz = bounds[b + 2];
+        worldBounds[o] = world[m + 12];
+        worldBounds[o + 1] = world[m + 13];
+        worldBounds[o + 2] = world[m + 14];
+        worldBounds[o + 3] = Math.abs(world[m]) * bx + Math.abs(world[m + 4]) * by + Math.abs(world[m + 8]) * bz;
+        worldBounds[o + 4] = Math.abs(world[m + 1]) * bx + Math.abs(world[m + 5]) * by + Math.abs(world[m + 9]) * bz;
+        worldBounds[o + 5] = Math.abs(world[m + 2]) * bx + Math.abs(world[m + 6]) * by + Math.abs(world[m + 10]) * bz;
+    }
+
+    /**
+     * Sorts slots by hierarchy depth with a counting sort. Parents living in another
+     * store are ignored, so such children are treated as roots here.
+     */
+    private void rebuildOrder() {
+        if (order.length < owners.length) {
+            order = new int[owners.length];
+            parents = new int[owners.length];
+            depths = new int[owners.length];
+        }
+
+        for (int slot = 0; slot < size; slot++) {
+            Transform parent = owners[slot].getParent();
+            parents[slot] = parent != null && parent.getStore() == this ? parent.getSlot() : -1;
+            depths[slot] = -1;
+        }
+
+        int maxDepth = 0;
+        for (int slot = 0; slot < size; slot++) {
+            // Walk up to the first ancestor with a known depth, then assign depths on the way back
+            int unresolved = 0;
+            int s = slot;
+            while (s >= 0 && depths[s] < 0) {
+                s = parents[s];
+                unresolved++;
+            }
+            int depth = (s < 0 ? -1 : depths[s]) + unresolved;
+            maxDepth = Math.max(maxDepth, depth);
+            for (s = slot; s >= 0 && depths[s] < 0; s = parents[s]) {
+                depths[s] = depth--;
+            }
+        }
+
+        levelCount = size == 0 ? 0 : maxDepth + 1;
+        levelStart = new int[levelCount + 1];
+        for (int slot = 0; slot < size; slot++) {
+            levelStart[depths[slot] + 1]++;
+        }
+        for (int level = 0; level < levelCount; level++) {
+            levelStart[level + 1] += levelStart[level];
+        }
+        int[] cursor = Arrays.copyOf(levelStart, levelCount);
+        for (int slot = 0; slot < size; slot++) {
+            order[cursor[depths[slot]]++] = slot;
+        }
+
+        hierarchyChanged = false;
+    }
+
+    // Called when a transform in this store changes parent
+    void markHierarchyChanged(int slot) {
+        hierarchyChanged = true;
+        flags[slot] |= FLAG_DIRTY;
+    }
+
+    /**
+     * Makes sure the cached local matrices of a slot are up to date.
+     */
+    public void updateMatrices(int slot) {
+        if ((flags[slot] & FLAG_DIRTY) != 0) {
+            computeMatrices(slot);
+        }
+    }
+
+    /**
+     * Builds model = T * Rx * Ry * Rz * S (the order Scene.render always used) in closed form.
+     * Since R is orthonormal, the normal matrix (M^-1)^T of the upper 3x3 is simply R * S^-1.
+     */
+    private void computeMatrices(int slot) {
+        int v = slot * 3;
+        double ax = Math.toRadians(rotation[v]);
+        double ay = Math.toRadians(rotation[v + 1]);
+        double az = Math.toRadians(rotation[v + 2]);
+        float sa = (float) Math.sin(ax), ca = (float) Math.cos(ax);
+        float sb = (float) Math.sin(ay), cb = (float) Math.cos(ay);
+        float sc = (float) Math.sin(az), cc = (float) Math.cos(az);
+
+        // Rotation columns
+        float r00 = cb * cc, r10 = sa * sb * cc + ca * sc, r20 = sa * sc - ca * sb * cc;
+        float r01 = -cb * sc, r11 = ca * cc - sa * sb * sc, r21 = ca * sb * sc + sa * cc;
+        float r02 = sb, r12 = -sa * cb, r22 = ca * cb;
+
+        float sx = scale[v], sy = scale[v + 1], sz = scale[v + 2];
+        float[] m = model;
+        int o = slot * 16;
+        m[o] = r00 * sx;      m[o + 1] = r10 * sx;  m[o + 2] = r20 * sx;   m[o + 3] = 0;
+        m[o + 4] = r01 * sy;  m[o + 5] = r11 * sy;  m[o + 6] = r21 * sy;   m[o + 7] = 0;
+        m[o + 8] = r02 * sz;  m[o + 9] = r12 * sz;  m[o + 10] = r22 * sz;  m[o + 11] = 0;
+        m[o + 12] = position[v]; m[o + 13] = position[v + 1]; m[o + 14] = position[v + 2]; m[o + 15] = 1;
+
+        float ix = sx != 0 ? 1.0f / sx : 0;
+        float iy = sy != 0 ? 1.0f / sy : 0;
+        float iz = sz != 0 ? 1.0f / sz : 0;
+        float[] n = normal;
+        int p = slot * 9;
+        n[p] = r00 * ix;      n[p + 1] = r10 * ix;  n[p + 2] = r20 * ix;
+        n[p + 3] = r01 * iy;  n[p + 4] = r11 * iy;  n[p + 5] = r21 * iy;
+        n[p + 6] = r02 * iz;  n[p + 7] = r12 * iz;  n[p + 8] = r22 * iz;
+
+        flags[slot] &= ~FLAG_DIRTY;
+    }
+
+    // Per-slot accessors
+
+    public Vector3f getPosition(int slot, Vector3f dest) { return get3(position, slot, dest); }
+    public void setPosition(int slot, float x, float y, float z) { set3(position, slot, x, y, z); flags[slot] |= FLAG_DIRTY; }
+
+    public Vector3f getRotation(int slot, Vector3f dest) { return get3(rotation, slot, dest); }
+    public void setRotation(int slot, float x, float y, float z) { set3(rotation, slot, x, y, z); flags[slot] |= FLAG_DIRTY; }
+
+    public Vector3f getScale(int slot, Vector3f dest) { return get3(scale, slot, dest); }
+    public void setScale(int slot, float x, float y, float z) { set3(scale, slot, x, y, z); flags[slot] |= FLAG_DIRTY; }
+
+    public Vector3f getVelocity(int slot, Vector3f dest) { return get3(velocity, slot, dest); }
+    public void setVelocity(int slot, float x, float y, float z) { set3(velocity, slot, x, y, z); }
+
+    public Vector3f getBounds(int slot, Vector3f dest) { return get3(bounds, slot, dest); }
+    public void setBounds(int slot, float x, float y, float z) { set3(bounds, slot, x, y, z); flags[slot] |= FLAG_DIRTY; }
+
+    public Vector4f getColor(int slot, Vector4f dest) {
+        int i = slot * 4;
+        return dest.set(color[i], color[i + 1], color[i + 2], color[i + 3]);
+    }
+
+    public void setColor(int slot, float r, float g, float b, float a) {
+        int i = slot * 4;
+        color[i] = r;
+        color[i + 1] = g;
+        color[i + 2] = b;
+        color[i + 3] = a;
+    }
+
+    public Matrix4f getModelMatrix(int slot, Matrix4f dest) {
+        updateMatrices(slot);
+        return dest.set(model, slot * 16);
+    }
+
+    /**
+     * Returns the world matrix computed by the last {@link #updateMatrices()} pass.
+     */
+    public Matrix4f getWorldMatrix(int slot, Matrix4f dest) {
+        return dest.set(world, slot * 16);
+    }
+
+    public Matrix3f getNormalMatrix(int slot, Matrix3f dest) {
+        updateMatrices(slot);
+        int p = slot * 9;
+        return dest.set(normal[p], normal[p + 1], normal[p + 2],
+                        normal[p + 3], normal[p + 4], normal[p + 5],
+                        normal[p + 6], normal[p + 7], normal[p + 8]);
+    }
+
+    public boolean hasFlag(int slot, byte flag) {
+        return (flags[slot] & flag) != 0;
+    }
+
+    public void setFlag(int slot, byte flag, boolean value) {
+        flags[slot] = (byte) (value ? flags[slot] | flag : flags[slot] & ~flag);
+    }
+
+    // Clears a flag on every slot
+    public void clearFlag(byte flag) {
+        for (int slot = 0; slot < size; slot++) {
+            flags[slot] &= ~flag;
+        }
+    }
+
+    public Transform getOwner(int slot) { return owners[slot]; }
+    public int size() { return size; }
+    public int capacity() { return owners.length; }
+
+    // r = a * b for column-major affine 4x4 matrices; r must not overlap a or b
+    private static void mulAffine(float[] a, int ao, float[] b, int bo, float[] r, int ro) {
+        for (int col = 0; col < 4; col++) {
+            float b0 = b[bo + col * 4], b1 = b[bo + col * 4 + 1], b2 = b[bo + col * 4 + 2];
+            for (int row = 0; row < 3; row++) {
+                float value = a[ao + row] * b0 + a[ao + 4 + row] * b1 + a[ao + 8 + row] * b2;
+                r[ro + col * 4 + row] = col == 3 ? value + a[ao + 12 + row] : value;
+            }
+            r[ro + col * 4 + 3] = col == 3 ? 1 : 0;
+        }
+    }
+
+    // r = a * b for column-major 3x3 matrices
+    private static void mul3(float[] a, int ao, float[] b, int bo, float[] r, int ro) {
+        for (int col = 0; col < 3; col++) {
+            float b0 = b[bo + col * 3], b1 = b[bo + col * 3 + 1], b2 = b[bo + col * 3 + 2];
+            for (int row = 0; row < 3; row++) {
+                r[ro + col * 3 + row] = a[ao + row] * b0 + a[ao + 3 + row] * b1 + a[ao + 6 + row] * b2;
+            }
+        }
+    }
+
+    private static Vector3f get3(float[] array, int slot, Vector3f dest) {
+        int i = slot * 3;
+        return dest.set(array[i], array[i + 1], array[i + 2]);
+    }
+
+    private static void set3(float[] array, int slot, float x, float y, float z) {
+        int i = slot * 3;
+        array[i] = x;
+        array[i + 1] = y;
+        array[i + 2] = z;
+    }
+}
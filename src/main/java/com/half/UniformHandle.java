@@ -0,0 +1,215 @@
+package com.half;
+
+import org.joml.Matrix3fc;
+import org.joml.Matrix4fc;
+import org.joml.Vector3fc;
+import org.joml.Vector4fc;
+
+import static org.lwjgl.opengl.GL20.*;
+
+/**
+ * UniformHandle - a resolved uniform of a linked Shader.
+ * Handles are created once by {@link Shader#link()} from the program's active uniforms,
+ * so setting a value costs no map lookup, boxing or string work. The last uploaded
+ * value is cached and unchanged values are not sent to the driver again.
+ *
+ * Like glUniform*, setters apply to the currently bound program, which must be the
+ * handle's shader.
+ */
+public class UniformHandle {
+    private final String name;
+    private final int location;
+    private final int type; // GL type enum, e.g. GL_FLOAT_MAT4
+    private final float[] cached; // Last uploaded float components
+    private final float[] scratch;
+    private int cachedInt;
+    private boolean hasValue; // False until the first upload, as the program's value is unknown
+    private int uploads;
+    private int skipped;
+
+    UniformHandle(String name, int location, int type) {
+        this.name = name;
+        this.location = location;
+        this.type = type;
+        int components = floatComponents(type);
+        this.cached = new float[components];
+        this.scratch = new float[components];
+    }
+
+    public void set(float value) {
+        checkType(GL_FLOAT);
+        if (hasValue && cached[0] == value) {
+            skipped++;
+            return;
+        }
+        cached[0] = value;
+        glUniform1f(location, value);
+        uploaded();
+    }
+
+    // Also used for booleans and sampler units
+    public void set(int value) {
+        if (type != GL_INT && type != GL_BOOL && !isSampler(type)) {
+            throw typeMismatch("int");
+        }
+        if (hasValue && cachedInt == value) {
+            skipped++;
+            return;
+        }
+        cachedInt = value;
+        glUniform1i(location, value);
+        uploaded();
+    }
+
+    public void set(float x, float y) {
+        checkType(GL_FLOAT_VEC2);
+        if (hasValue && cached[0] == x && cached[1] == y) {
+            skipped++;
+            return;
+        }
+        cached[0] = x;
+        cached[1] = y;
+        glUniform2f(location, x, y);
+        uploaded();
+    }
+
+    public void set(float x, float y, float z) {
+        checkType(GL_FLOAT_VEC3);
+        if (hasValue && cached[0] == x && cached[1] == y && cached[2] == z) {
+            skipped++;
+            return;
+        }
+        cached[0] = x;
+        cached[1] = y;
+        cached[2] = z;
+        glUniform3f(location, x, y, z);
+        uploaded();
+    }
+
+    public void set(Vector3fc value) {
+        set(value.x(), value.y(), value.z());
+    }
+
+    public void set(float x, float y, float z, float w) {
+        checkType(GL_FLOAT_VEC4);
+        if (hasValue && cached[0] == x && cached[1] == y && cached[2] == z && cached[3] == w) {
+            skipped++;
+            return;
+        }
+        cached[0] = x;
+        cached[1] = y;
+        cached[2] = z;
+        cached[3] = w;
+        glUniform4f(location, x, y, z, w);
+        uploaded();
+    }
+
+    public void set(Vector4fc value) {
+        set(value.x(), value.y(), value.z(), value.w());
+    }
+
+    public void set(Matrix4fc value) {
+        checkType(GL_FLOAT_MAT4);
+        value.get(scratch);
+        if (changed()) {
+            glUniformMatrix4fv(location, false, cached);
+            uploaded();
+        }
+    }
+
+    public void set(Matrix3fc value) {
+        checkType(GL_FLOAT_MAT3);
+        value.get(scratch);
+        if (changed()) {
+            glUniformMatrix3fv(location, false, cached);
+            uploaded();
+        }
+    }
+
+    // Compares scratch with the cache and adopts it if different
+    private boolean changed() {
+        if (hasValue) {
+            boolean equal = true;
+            for (int i = 0; i < scratch.length; i++) {
+                equal &= scratch[i] == cached[i];
+            }
+            if (equal) {
+                skipped++;
+                return false;
+            }
+        }
+        System.arraycopy(scratch, 0, cached, 0, scratch.length);
+        return true;
+    }
+
+    private void uploaded() {
+        hasValue = true;
+        uploads++;
+    }
+
+    /**
+     * Forgets the cached value so the next set uploads unconditionally,
+     * e.g. after the program was modified behind the handle's back.
+     */
+    public void invalidate() {
+        hasValue = false;
+    }
+
+    private void checkType(int expected) {
+        if (type != expected) {
+            throw typeMismatch(typeName(expected));
+        }
+    }
+
+    private IllegalStateException typeMismatch(String requested) {
+        return new IllegalStateException("Uniform " + name + " is " + typeName(type) + ", not " + requested);
+    }
+
+    private static int floatComponents(int type) {
+        switch (type) {
+            case GL_FLOAT: return 1;
+            case GL_FLOAT_VEC2: return 2;
+            case GL_FLOAT_VEC3: return 3;
+            case GL_FLOAT_VEC4: return 4;
+            case GL_FLOAT_MAT3: return 9;
+            case GL_FLOAT_MAT4: return 16;
+            default: return 0;
+        }
+    }
+
+    private static boolean isSampler(int type) {
+        switch (type) {
+            case GL_SAMPLER_1D:
+            case GL_SAMPLER_2D:
+            case GL_SAMPLER_3D:
+            case GL_SAMPLER_CUBE:
+            case GL_SAMPLER_1D_SHADOW:
+            case GL_SAMPLER_2D_SHADOW:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static String typeName(int type) {
+        switch (type) {
+            case GL_FLOAT: return "float";
+            case GL_FLOAT_VEC2: return "vec2";
+            case GL_FLOAT_VEC3: return "vec3";
+            case GL_FLOAT_VEC4: return "vec4";
+            case GL_FLOAT_MAT3: return "mat3";
+            case GL_FLOAT_MAT4: return "mat4";
+            case GL_INT: return "int";
+            case GL_BOOL: return "bool";
+            default: return isSampler(type) ? "sampler" : "type 0x" + Integer.toHexString(type);
+        }
+    }
+
+    public String getName() { return name; }
+    public int getLocation() { return location; }
+    public int getType() { return type; }
+
+    // Upload statistics since creation
+    public int getUploadCount() { return uploads; }
+    public int getSkippedCount() { return skipped; }
+}
@@ -0,0 +1,213 @@
+package com.half;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL33.*;
+
+/**
+ * VertexFormat - GPU layout of a mesh's position (location 0) and normal (location 1).
+ * Meshes are always generated as 6 floats per vertex; {@link #encode} packs them into
+ * the chosen format when the mesh is uploaded.
+ *
+ * Compressed formats use 12 bytes per vertex instead of 24:
+ * - positions as half floats, or as snorm16 relative to the mesh's bounding box. The
+ *   box is undone by folding {@link #dequantization} into the instance model matrix,
+ *   so shaders need no per-mesh uniforms.
+ * - normals octahedral-encoded into two snorm16 or the x/y fields of a 10_10_10_2 value.
+ *   Shaders decode them when built with {@link #getShaderDefines()}.
+ */
+public enum VertexFormat {
+    FLOAT(24, false, false),
+    HALF_OCT16(12, false, true),
+    SNORM16_OCT16(12, true, true),
+    SNORM16_OCT10(12, true, true);
+
+    public static final int SOURCE_FLOATS = 6; // Position and normal as generated
+
+    private final int stride;
+    private final boolean quantizedPositions;
+    private final boolean octahedralNormals;
+
+    VertexFormat(int stride, boolean quantizedPositions, boolean octahedralNormals) {
+        this.stride = stride;
+        this.quantizedPositions = quantizedPositions;
+        this.octahedralNormals = octahedralNormals;
+    }
+
+    public int getStride() { return stride; }
+    public boolean hasQuantizedPositions() { return quantizedPositions; }
+    public boolean hasOctahedralNormals() { return octahedralNormals; }
+
+    /**
+     * Lines to insert after a vertex shader's #version directive, selecting the
+     * matching normal decoding.
+     */
+    public String getShaderDefines() {
+        return octahedralNormals ? "#define OCTAHEDRAL_NORMALS\n" : "";
+    }
+
+    /**
+     * Points attributes 0 and 1 of the bound VAO at the bound GL_ARRAY_BUFFER.
+     */
+    public void setupAttributes() {
+        switch (this) {
+            case FLOAT:
+                glVertexAttribPointer(0, 3, GL_FLOAT, false, stride, 0);
+                glVertexAttribPointer(1, 3, GL_FLOAT, false, stride, 3 * Float.BYTES);
+                break;
+            case HALF_OCT16:
+                glVertexAttribPointer(0, 3, GL_HALF_FLOAT, false, stride, 0);
+                glVertexAttribPointer(1, 2, GL_SHORT, true, stride, 8);
+                break;
+            case SNORM16_OCT16:
+                glVertexAttribPointer(0, 3, GL_SHORT, true, stride, 0);
+                glVertexAttribPointer(1, 2, GL_SHORT, true, stride, 8);
+                break;
+            case SNORM16_OCT10:
+                glVertexAttribPointer(0, 3, GL_SHORT, true, stride, 0);
+                glVertexAttribPointer(1, 4, GL_INT_2_10_10_10_REV, true, stride, 8);
+                break;
+        }
+        glEnableVertexAttribArray(0);
+        glEnableVertexAttribArray(1);
+    }
+
+    /**
+     * Packs 6-float vertices into this format.
+     * @param box receives center xyz and half extents xyz of the positions (6 floats)
+     * @return a buffer from MemoryUtil.memAlloc; the caller frees it
+     */
+    public ByteBuffer encode(float[] vertices, float[] box) {
+        if (vertices.length % SOURCE_FLOATS != 0) {
+            throw new IllegalArgumentException("Vertex data is not a multiple of " + SOURCE_FLOATS + " floats");
+        }
+        int count = vertices.length / SOURCE_FLOATS;
+        computeBox(vertices, box);
+        float cx = box[0], cy = box[1], cz = box[2];
+        float sx = 1.0f / box[3], sy = 1.0f / box[4], sz = 1.0f / box[5];
+
+        ByteBuffer buffer = MemoryUtil.memAlloc(count * stride);
+        for (int i = 0; i < vertices.length; i += SOURCE_FLOATS) {
+            float x = vertices[i], y = vertices[i + 1], z = vertices[i + 2];
+            switch (this) {
+                case FLOAT:
+                    for (int j = 0; j < SOURCE_FLOATS; j++) {
+                        buffer.putFloat(vertices[i + j]);
+                    }
+                    continue;
+                case HALF_OCT16:
+                    buffer.putShort(toHalf(x)).putShort(toHalf(y)).putShort(toHalf(z)).putShort((short) 0);
+                    break;
+                default:
+                    buffer.putShort(toSnorm16((x - cx) * sx))
+                          .putShort(toSnorm16((y - cy) * sy))
+                          .putShort(toSnorm16((z - cz) * sz))
+                          .putShort((short) 0);
+                    break;
+            }
+
+            // Octahedral projection: fold the lower hemisphere over the diagonals
+            float nx = vertices[i + 3], ny = vertices[i + 4], nz = vertices[i + 5];
+            float l1 = Math.abs(nx) + Math.abs(ny) + Math.abs(nz);
+            float ox = l1 > 0 ? nx / l1 : 0;
+            float oy = l1 > 0 ? ny / l1 : 0;
+            if (nz < 0) {
+                float fx = (1.0f - Math.abs(oy)) * (ox >= 0 ? 1.0f : -1.0f);
+                float fy = (1.0f - Math.abs(ox)) * (oy >= 0 ? 1.0f : -1.0f);
+                ox = fx;
+                oy = fy;
+            }
+            if (this == SNORM16_OCT10) {
+                buffer.putInt((toSnorm(ox, 511) & 0x3FF) | ((toSnorm(oy, 511) & 0x3FF) << 10));
+            } else {
+                buffer.putShort(toSnorm16(ox)).putShort(toSnorm16(oy));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // Center and half extents of the positions; empty axes get an extent of 1
+    private static void computeBox(float[] vertices, float[] box) {
+        float minX = Float.POSITIVE_INFINITY, minY = minX, minZ = minX;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = maxX, maxZ = maxX;
+        for (int i = 0; i < vertices.length; i += SOURCE_FLOATS) {
+            minX = Math.min(minX, vertices[i]);
+            maxX = Math.max(maxX, vertices[i]);
+            minY = Math.min(minY, vertices[i + 1]);
+            maxY = Math.max(maxY, vertices[i + 1]);
+            minZ = Math.min(minZ, vertices[i + 2]);
+            maxZ = Math.max(maxZ, vertices[i + 2]);
+        }
+        box[0] = (minX + maxX) * 0.5f;
+        box[1] = (minY + maxY) * 0.5f;
+        box[2] = (minZ + maxZ) * 0.5f;
+        box[3] = maxX > minX ? (maxX - minX) * 0.5f : 1.0f;
+        box[4] = maxY > minY ? (maxY - minY) * 0.5f : 1.0f;
+        box[5] = maxZ > minZ ? (maxZ - minZ) * 0.5f : 1.0f;
+    }
+
+    /**
+     * Multiplies a column-major model matrix in place by translate(center) * scale(extents),
+     * mapping snorm16 positions back into mesh space.
+     */
+    public static void dequantization(float[] m, float[] box) {
+        float cx = box[0], cy = box[1], cz = box[2];
+        m[12] += m[0] * cx + m[4] * cy + m[8] * cz;
+        m[13] += m[1] * cx + m[5] * cy + m[9] * cz;
+        m[14] += m[2] * cx + m[6] * cy + m[10] * cz;
+        for (int row = 0; row < 3; row++) {
+            m[row] *= box[3];
+            m[4 + row] *= box[4];
+            m[8 + row] *= box[5];
+        }
+    }
+
+    private static short toSnorm16(float value) {
+        return (short) toSnorm(value, 32767);
+    }
+
+    private static int toSnorm(float value, int max) {
+        return Math.round(Math.max(-1.0f, Math.min(1.0f, value)) * max);
+    }
+
+    // IEEE 754 binary16 with round to nearest even; overflow becomes infinity
+    static short toHalf(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = ((bits >>> 23) & 0xFF) - 127 + 15;
+        int mantissa = bits & 0x7FFFFF;
+
+        if (exponent >= 0x1F) {
+            // Overflow, infinity or NaN
+            boolean nan = ((bits >>> 23) & 0xFF) == 0xFF && mantissa != 0;
+            return (short) (sign | 0x7C00 | (nan ? 0x200 : 0));
+        }
+        if (exponent <= 0) {
+            if (exponent < -10) {
+                return (short) sign; // Too small, rounds to zero
+            }
+            // Subnormal: shift in the implicit leading bit
+            mantissa |= 0x800000;
+            int shift = 14 - exponent;
+            int half = mantissa >> shift;
+            int rest = mantissa & ((1 << shift) - 1);
+            int midpoint = 1 << (shift - 1);
+            if (rest > midpoint || (rest == midpoint && (half & 1) != 0)) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+        int half = (exponent << 10) | (mantissa >> 13);
+        int rest = mantissa & 0x1FFF;
+        if (rest > 0x1000 || (rest == 0x1000 && (half & 1) != 0)) {
+            half++; // May carry into the exponent, which is still correct
+        }
+        return (short) (sign | half);
+    }
+}
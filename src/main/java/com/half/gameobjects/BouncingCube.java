@@ -9,6 +9,8 @@ import org.joml.Vector3f;
 public class BouncingCube extends Cube {
     private final Vector3f screenBounds;
     private final float bounceReduction;
+    private final Vector3f scratchPosition = new Vector3f();
+    private final Vector3f scratchVelocity = new Vector3f();
 
     public BouncingCube(String name, Vector3f screenBounds) {
         super(name, 1.0f); // Default size for CubeMesh
@@ -21,17 +23,23 @@ public class BouncingCube extends Cube {
         super.update(deltaTime);
         
         // Bounce off screen boundaries
-        if (Math.abs(getTransform().getPosition().x) > screenBounds.x / 2) {
-            getTransform().getPosition().x = (screenBounds.x / 2) * Math.signum(getTransform().getPosition().x);
-            getVelocity().x *= -bounceReduction;
+        Vector3f position = getTransform().getPosition(scratchPosition);
+        Vector3f velocity = scratchVelocity.set(getVelocity());
+
+        if (Math.abs(position.x) > screenBounds.x / 2) {
+            position.x = (screenBounds.x / 2) * Math.signum(position.x);
+            velocity.x *= -bounceReduction;
         }
-        if (Math.abs(getTransform().getPosition().y) > screenBounds.y / 2) {
-            getTransform().getPosition().y = (screenBounds.y / 2) * Math.signum(getTransform().getPosition().y);
-            getVelocity().y *= -bounceReduction;
+        if (Math.abs(position.y) > screenBounds.y / 2) {
+            position.y = (screenBounds.y / 2) * Math.signum(position.y);
+            velocity.y *= -bounceReduction;
         }
-        if (Math.abs(getTransform().getPosition().z) > screenBounds.z / 2) {
-            getTransform().getPosition().z = (screenBounds.z / 2) * Math.signum(getTransform().getPosition().z);
-            getVelocity().z *= -bounceReduction;
+        if (Math.abs(position.z) > screenBounds.z / 2) {
+            position.z = (screenBounds.z / 2) * Math.signum(position.z);
+            velocity.z *= -bounceReduction;
         }
+
+        getTransform().setPosition(position);
+        setVelocity(velocity);
     }
 }
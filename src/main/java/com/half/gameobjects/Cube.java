@@ -1,12 +1,12 @@
 package com.half.gameobjects;
 
-import com.half.CubeMesh;
+import com.half.MeshCache;
 import com.half.GameObject;
 
 public class Cube extends GameObject {
 
     public Cube(String name, float size) {
-        super(name, new CubeMesh(size));
+        super(name, MeshCache.getCube(size));
     }
 
     @Override
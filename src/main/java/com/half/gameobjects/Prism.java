@@ -1,18 +1,20 @@
 package com.half.gameobjects;
 
-import com.half.gameobjects.PrismMesh;
-import org.joml.Vector3f;
+import com.half.GameObject;
+import com.half.JobSystem;
+import com.half.MeshCache;
+import org.joml.Vector3fc;
 
 public class Prism extends GameObject {
     private float width, height, depth;
 
     public Prism(String name, float width, float height, float depth) {
-        super(name, new PrismMesh(width, height, depth));
+        super(name, MeshCache.getPrism(width, height, depth));
         this.width = width;
         this.height = height;
         this.depth = depth;
-        this.hasPhysics = true;
-        this.bounds = new Vector3f(width * 0.5f, height * 0.5f, depth * 0.5f);
+        setHasPhysics(true);
+        setBounds(width * 0.5f, height * 0.5f, depth * 0.5f);
     }
 
     public Prism(String name) {
@@ -21,21 +23,20 @@ public class Prism extends GameObject {
 
     @Override
     public void start() {
-        System.out.println("Prism " + name + " spawned with size " + width + "x" + height + "x" + depth);
+        JobSystem.defer(() -> System.out.println("Prism " + name + " spawned with size " + width + "x" + height + "x" + depth));
     }
 
     @Override
     public void update(float deltaTime) {
         // Prisms tumble
-        getTransform().getRotation().z += 45 * deltaTime;
+        getTransform().rotate(0, 0, 45 * deltaTime);
         updatePhysics(deltaTime);
     }
 
     @Override
     public void onCollision(GameObject other) {
         System.out.println("Prism " + name + " collided with " + other.getName());
-        getVelocity().x *= -0.7f;
-        getVelocity().y *= -0.7f;
-        getVelocity().z *= -0.7f;
+        Vector3fc velocity = getVelocity();
+        setVelocity(velocity.x() * -0.7f, velocity.y() * -0.7f, velocity.z() * -0.7f);
     }
 }
@@ -1,12 +1,12 @@
 package com.half.gameobjects;
 
 import com.half.GameObject;
-import com.half.SphereMesh;
+import com.half.MeshCache;
 
 public class Sphere extends GameObject {
 
     public Sphere(String name, float radius, int sectorCount, int stackCount) {
-        super(name, new SphereMesh(radius, sectorCount, stackCount));
+        super(name, MeshCache.getSphere(radius, sectorCount, stackCount));
     }
 
     @Override